@@ -1,7 +1,16 @@
 package edu.farmingdale.recipegenerator;
 
 import java.sql.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import edu.farmingdale.recipegenerator.User;
 import edu.farmingdale.recipegenerator.SessionManager;
 
@@ -11,29 +20,396 @@ import edu.farmingdale.recipegenerator.SessionManager;
  * preference storage, fridge inventory snapshots, and user management.
  *
  * This class uses JDBC to connect to the Azure MySQL database and perform SQL operations.
+ * A single shared instance (see {@link #getInstance()}) is used by every controller, and
+ * its connections come from a bounded {@link ConnectionPool} so queries reuse warm
+ * TLS sessions instead of reconnecting on every call.
+ *
+ * Every public method also has an {@code ...Async} twin that runs the same query on a
+ * virtual thread and returns a {@link CompletableFuture}. Async calls carry a deadline
+ * (see {@link #callAsync(Duration, Callable)}); when it passes, or the future is
+ * cancelled, the running statement is cancelled on the server. JavaFX controllers use
+ * these variants and apply results back on the FX thread.
+ *
+ * Logins are always verified against the server; the {@link LocalReplica} only answers
+ * them when the server cannot be reached (it throws an {@link SQLException}), using the
+ * offline verifier saved at the last online login. Preference reads are served from the
+ * replica when it has a copy of the user, and preference saves land there first, so
+ * they keep working while the server is slow or unreachable.
  *
  * Tables involved:
  * - users
- * - fridge_configs
+ * - fridge_configs (saved JSON snapshots)
+ * - fridge_items (one row per ingredient, created by {@link SchemaMigrator})
  *
  * NOTE: Ensure that the `SessionManager` and `User` classes are correctly defined.
  */
-public class AzureDBConnector {
+public class AzureDBConnector implements AutoCloseable {
+    // server-side prepared statements, so the pool's StatementCache can skip the
+    // prepare round trip; the driver's own client-side cache would be redundant.
+    // useCursorFetch lets statements with a fetch size read rows in chunks, and
+    // rewriteBatchedStatements turns batched inserts into one multi-row INSERT.
+    // connectTimeout / socketTimeout bound every connect and read, so an unreachable
+    // server fails a call instead of hanging it.
     private static final String DB_URL      =
-            "jdbc:mysql://csc311.mysql.database.azure.com/flavor_test?useSSL=true";
+            "jdbc:mysql://csc311.mysql.database.azure.com/flavor_test?useSSL=true"
+                    + "&useServerPrepStmts=true&cachePrepStmts=false&useCursorFetch=true"
+                    + "&rewriteBatchedStatements=true"
+                    + "&connectTimeout=" + Long.getLong("flavorbot.db.connectTimeoutMs", 10_000L)
+                    + "&socketTimeout=" + Long.getLong("flavorbot.db.socketTimeoutMs", 60_000L);
     private static final String USERNAME    = "super_admin";
     private static final String PASSWORD    = "ThisIsAPassword1";
 
+    // --- single app-wide connector, shared by every controller ---
+    private static final AzureDBConnector INSTANCE = new AzureDBConnector();
+
+    // rows fetched per round trip by the streaming (forEach...) queries
+    private static final int STREAM_FETCH_SIZE = 256;
+
+    /**
+     * Largest page the keyset-paginated listings will return.
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    // deadline for async calls that do not ask for their own
+    private static final Duration DEFAULT_CALL_TIMEOUT =
+            Duration.ofSeconds(Long.getLong("flavorbot.db.callTimeoutSec", 15L));
+
+    // how long a call waits for the schema migrations before giving up on the server
+    private static final long SCHEMA_WAIT_MS = Long.getLong("flavorbot.db.schemaWaitMs", 3_000L);
+
+    // preferences stored for a brand-new account
+    private static final String NEW_USER_PREFERENCES = "{}";
+
+    // the unique index that reports a taken username, the migration that creates it,
+    // and MySQL's error code for a duplicate key
+    private static final String USERNAME_INDEX         = "uq_users_username";
+    private static final int    USERNAME_INDEX_VERSION = 4;
+    private static final int    DUPLICATE_KEY          = 1062;
+
+    // set while an async call runs, so prepare() can apply its deadline and track its statement
+    private static final ThreadLocal<CallContext> CURRENT_CALL = new ThreadLocal<>();
+
+    private final ConnectionPool pool;
+    private final ExecutorService dbExecutor;
+    private final LocalReplica replica = LocalReplica.getInstance();
+    // completes once the bundled schema migrations have run
+    private final CompletableFuture<Void> schemaReady;
+    // migration versions recorded as applied once they have run; checked before relying on one
+    private volatile Set<Integer> schemaVersions = Set.of();
+
+    // private ctor → use getInstance()
+    private AzureDBConnector() {
+        this.pool = new ConnectionPool(DB_URL, USERNAME, PASSWORD,
+                ConnectionPool.Config.fromSystemProperties());
+        this.dbExecutor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("db-call-", 0).factory());
+        // migrate in the background so constructing the connector never blocks the FX thread
+        this.schemaReady = CompletableFuture.runAsync(this::migrateSchema, dbExecutor);
+    }
+
+    // runs the bundled migrations and records which are applied; after a failure the
+    // schema is behind, and code that depends on a later migration checks schemaApplied()
+    private void migrateSchema() {
+        try (Connection conn = getConnection()) {
+            try {
+                SchemaMigrator.migrate(conn);
+            } finally {
+                schemaVersions = Set.copyOf(SchemaMigrator.appliedVersions(conn));
+            }
+        } catch (SQLException e) {
+            System.out.println("Schema migration failed; the database schema is NOT up to date "
+                    + "(applied: " + schemaVersions + "). It is retried on the next start.");
+            e.printStackTrace();
+        }
+    }
+
+    // whether a migration is recorded as applied; waits for the migrations to run first
+    private boolean schemaApplied(int version) throws SQLException {
+        awaitSchema();
+        return schemaVersions.contains(version);
+    }
+
+    // fridge_items only exists once the migrations have run. Waits a bounded time: while
+    // the migrations are stuck (e.g. on an unreachable server) the call fails like any
+    // other failed query, and the replica and offline paths take over
+    private void awaitSchema() throws SQLException {
+        try {
+            schemaReady.get(SCHEMA_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SQLTimeoutException("Database schema migrations have not finished after "
+                    + SCHEMA_WAIT_MS + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the schema migrations", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("Schema migrations did not run", e.getCause());
+        }
+    }
+
+    // a connection for the tables the migrations create
+    private Connection schemaConnection() throws SQLException {
+        awaitSchema();
+        return getConnection();
+    }
+
+    /**
+     * @return the one-and-only AzureDBConnector, backed by a shared connection pool
+     */
+    public static AzureDBConnector getInstance() {
+        return INSTANCE;
+    }
+
 
     /**
-     * Establishes and returns a live database connection to the Azure MySQL server.
+     * Borrows a live database connection from the shared pool. Closing the
+     * returned connection hands it back to the pool for reuse.
      *
      * @return Connection object to the database
      * @throws SQLException if connection fails
      */
     // 1) Single place to get a live Connection
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, USERNAME, PASSWORD);
+        return pool.getConnection();
+    }
+
+    /**
+     * Returns a snapshot of the connection pool counters (active, idle, wait times).
+     *
+     * @return current pool statistics
+     */
+    public ConnectionPool.Stats getPoolStats() {
+        return pool.getStats();
+    }
+
+    /**
+     * Closes all pooled connections. Called once when the application exits.
+     */
+    @Override
+    public void close() {
+        dbExecutor.shutdown();
+        pool.close();
+    }
+
+    /**
+     * Prepares {@code sql} on {@code conn}. Inside an async call this also applies the
+     * call's deadline as a query timeout and registers the statement so the call can
+     * be cancelled on the server.
+     */
+    private PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        return prepare(conn, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    private PreparedStatement prepare(Connection conn, String sql, int autoGeneratedKeys)
+            throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, autoGeneratedKeys);
+        CallContext call = CURRENT_CALL.get();
+        // cached statements keep their settings, so always reset timeout and fetch size
+        ps.setQueryTimeout(call == null ? 0 : call.timeoutSeconds);
+        ps.setFetchSize(0);
+        if (call != null) {
+            call.track(conn, ps);
+        }
+        return ps;
+    }
+
+    // —— Async Methods —— //
+
+    /**
+     * Runs {@code work} on a virtual thread with the given deadline. If the deadline
+     * passes or the returned future is cancelled, the statement currently executing
+     * for this call is cancelled on the server and the future completes exceptionally
+     * ({@link java.util.concurrent.TimeoutException} or
+     * {@link java.util.concurrent.CancellationException}).
+     *
+     * @param timeout deadline for the whole call, including the wait for a pooled connection
+     * @param work    the blocking connector call to run, e.g. {@code () -> getFridgeItems(id)}
+     * @param <T>     result type
+     * @return a future completed with the result of {@code work}
+     */
+    public <T> CompletableFuture<T> callAsync(Duration timeout, Callable<T> work) {
+        CallContext call = new CallContext(timeout);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        dbExecutor.execute(() -> {
+            CURRENT_CALL.set(call);
+            try {
+                result.complete(work.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                call.finish();
+                CURRENT_CALL.remove();
+            }
+        });
+        result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+              .whenComplete((value, error) -> {
+                  if (error != null) {
+                      call.cancel();
+                  }
+              });
+        return result;
+    }
+
+    private <T> CompletableFuture<T> callAsync(Callable<T> work) {
+        return callAsync(DEFAULT_CALL_TIMEOUT, work);
+    }
+
+    /** Async variant of {@link #getUserByUsername(String)}. */
+    public CompletableFuture<UserRow> getUserByUsernameAsync(String username) {
+        return callAsync(() -> getUserByUsername(username));
+    }
+
+    /** Async variant of {@link #listAllUsers()}. */
+    public CompletableFuture<List<UserRow>> listAllUsersAsync() {
+        return callAsync(this::listAllUsers);
+    }
+
+    /** Async variant of {@link #forEachUser(Consumer)}; {@code action} runs on the database thread. */
+    public CompletableFuture<Integer> forEachUserAsync(Consumer<UserRow> action) {
+        return callAsync(() -> forEachUser(action));
+    }
+
+    /** Async variant of {@link #listUsersPage(int, int, UserRow.Projection)}. */
+    public CompletableFuture<Page<UserRow>> listUsersPageAsync(int afterId, int limit, UserRow.Projection projection) {
+        return callAsync(() -> listUsersPage(afterId, limit, projection));
+    }
+
+    /** Async variant of {@link #insertUser(String, String, String)}. */
+    public CompletableFuture<Void> insertUserAsync(String username, String email, String hashedPassword) {
+        return callAsync(() -> {
+            insertUser(username, email, hashedPassword);
+            return null;
+        });
+    }
+
+    /** Async variant of {@link #signUpAndSetSession(String, String, String)}. */
+    public CompletableFuture<Boolean> signUpAndSetSessionAsync(String username, String email, String hashedPassword) {
+        return callAsync(() -> signUpAndSetSession(username, email, hashedPassword));
+    }
+
+    /** Async variant of {@link #getUserPreferences(int)}. */
+    public CompletableFuture<String> getUserPreferencesAsync(int userId) {
+        return callAsync(() -> getUserPreferences(userId));
+    }
+
+    /** Async variant of {@link #updateUserPreferences(int, String)}. */
+    public CompletableFuture<Void> updateUserPreferencesAsync(int userId, String prefsJson) {
+        return callAsync(() -> {
+            updateUserPreferences(userId, prefsJson);
+            return null;
+        });
+    }
+
+    /** Async variant of {@link #createFridgeConfig(int, String, String)}. */
+    public CompletableFuture<Integer> createFridgeConfigAsync(int userId, String name, String itemsJson) {
+        return callAsync(() -> createFridgeConfig(userId, name, itemsJson));
+    }
+
+    /** Async variant of {@link #listFridgeConfigs(int)}. */
+    public CompletableFuture<List<FridgeConfigRow>> listFridgeConfigsAsync(int userId) {
+        return callAsync(() -> listFridgeConfigs(userId));
+    }
+
+    /** Async variant of {@link #forEachFridgeConfig(int, Consumer)}; {@code action} runs on the database thread. */
+    public CompletableFuture<Integer> forEachFridgeConfigAsync(int userId, Consumer<FridgeConfigRow> action) {
+        return callAsync(() -> forEachFridgeConfig(userId, action));
+    }
+
+    /** Async variant of {@link #listFridgeConfigsPage(int, int, int)}. */
+    public CompletableFuture<Page<FridgeConfigRow>> listFridgeConfigsPageAsync(int userId, int afterId, int limit) {
+        return callAsync(() -> listFridgeConfigsPage(userId, afterId, limit));
+    }
+
+    /** Async variant of {@link #getFridgeConfigItems(int)}. */
+    public CompletableFuture<String> getFridgeConfigItemsAsync(int configId) {
+        return callAsync(() -> getFridgeConfigItems(configId));
+    }
+
+    /** Async variant of {@link #authenticateAndSetSession(String, String)}. */
+    public CompletableFuture<Boolean> authenticateAndSetSessionAsync(String username, String providedPasswordHash) {
+        return callAsync(() -> authenticateAndSetSession(username, providedPasswordHash));
+    }
+
+    /** Async variant of {@link #refreshSession()}. */
+    public CompletableFuture<Boolean> refreshSessionAsync() {
+        return callAsync(this::refreshSession);
+    }
+
+    /** Async variant of {@link #usernameExists(String)}. */
+    public CompletableFuture<Boolean> usernameExistsAsync(String username) {
+        return callAsync(() -> usernameExists(username));
+    }
+
+    /** Async variant of {@link #getFridgeItems(int)}. */
+    public CompletableFuture<List<String>> getFridgeItemsAsync(int userId) {
+        return callAsync(() -> getFridgeItems(userId));
+    }
+
+    /** Async variant of {@link #getFridgeItemDetails(int)}. */
+    public CompletableFuture<List<Item>> getFridgeItemDetailsAsync(int userId) {
+        return callAsync(() -> getFridgeItemDetails(userId));
+    }
+
+    /** Async variant of {@link #getFridgeVersion(int)}. */
+    public CompletableFuture<String> getFridgeVersionAsync(int userId) {
+        return callAsync(() -> getFridgeVersion(userId));
+    }
+
+    /** Async variant of {@link #addFridgeItem(int, String)}. */
+    public CompletableFuture<Boolean> addFridgeItemAsync(int userId, String name) {
+        return callAsync(() -> addFridgeItem(userId, name));
+    }
+
+    /** Async variant of {@link #deleteFridgeItemByName(int, String)}. */
+    public CompletableFuture<Boolean> deleteFridgeItemByNameAsync(int userId, String name) {
+        return callAsync(() -> deleteFridgeItemByName(userId, name));
+    }
+
+    /** Async variant of {@link #updateFridgeItemByName(int, String, String)}. */
+    public CompletableFuture<Boolean> updateFridgeItemByNameAsync(int userId, String oldName, String newName) {
+        return callAsync(() -> updateFridgeItemByName(userId, oldName, newName));
+    }
+
+    /**
+     * Per-call state for an async call: its deadline and the statement it is running,
+     * so a timeout or cancellation can issue {@link Statement#cancel()}.
+     */
+    private static final class CallContext {
+        final int timeoutSeconds;
+        private Connection connection;
+        private Statement statement;
+        private boolean done;
+
+        CallContext(Duration timeout) {
+            // JDBC timeouts are whole seconds; round up so short deadlines still apply
+            this.timeoutSeconds = (int) Math.max(1, (timeout.toMillis() + 999) / 1000);
+        }
+
+        synchronized void track(Connection conn, Statement stmt) throws SQLException {
+            if (done) {
+                stmt.close();
+                throw new SQLTimeoutException("Database call was cancelled or timed out");
+            }
+            this.connection = conn;
+            this.statement  = stmt;
+        }
+
+        synchronized void cancel() {
+            done = true;
+            try {
+                // KILL QUERY targets the connection, so only cancel while this call still holds it
+                if (statement != null && !statement.isClosed() && !connection.isClosed()) {
+                    statement.cancel();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        synchronized void finish() {
+            done = true;
+            connection = null;
+            statement  = null;
+        }
     }
 
 
@@ -41,30 +417,32 @@ public class AzureDBConnector {
      * Retrieves user information by username.
      *
      * @param username the username to search
-     * @return Map of user fields or null if not found
+     * @return the user row, or null if not found
      */
     // 3) Fetch a single user by username
-    public Map<String,Object> getUserByUsername(String username) {
+    public UserRow getUserByUsername(String username) {
+        try {
+            return queryUserByUsername(username);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    // same as getUserByUsername, but lets the caller tell "not found" from "unreachable"
+    UserRow queryUserByUsername(String username) throws SQLException {
         String sql = ""
-                + "SELECT userID, username, email, hashed_password, preferences "
+                + "SELECT " + UserRow.COLUMNS
                 + "  FROM users "
                 + " WHERE username = ?";
         try (Connection        conn = getConnection();
-             PreparedStatement ps   = conn.prepareStatement(sql)) {
+             PreparedStatement ps   = prepare(conn, sql)) {
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    Map<String,Object> user = new HashMap<>();
-                    user.put("userID",         rs.getInt("userID"));
-                    user.put("username",       rs.getString("username"));
-                    user.put("email",          rs.getString("email"));
-                    user.put("hashed_password",rs.getString("hashed_password"));
-                    user.put("preferences",    rs.getString("preferences"));
-                    return user;
+                    return UserRow.MAPPER.map(rs);
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return null;
     }
@@ -72,31 +450,83 @@ public class AzureDBConnector {
 
     /**
      * Lists all users in the database.
+     * For large tables prefer {@link #forEachUser(Consumer)}, which streams rows
+     * instead of materializing them into a list.
      *
-     * @return List of user maps containing user fields
+     * @return List of user rows
      */
     // 4) List all users
-    public List<Map<String,Object>> listAllUsers() {
+    public List<UserRow> listAllUsers() {
+        List<UserRow> users = new ArrayList<>();
+        forEachUser(users::add);
+        return users;
+    }
+
+    /**
+     * Streams every user to {@code action} using a server-side cursor that fetches
+     * rows in fixed-size chunks, so memory use stays flat no matter how many users exist.
+     *
+     * @param action callback invoked once per row, in table order
+     * @return number of rows processed
+     */
+    public int forEachUser(Consumer<UserRow> action) {
         String sql = ""
-                + "SELECT userID, username, email, hashed_password, preferences "
+                + "SELECT " + UserRow.COLUMNS
                 + "  FROM users";
-        List<Map<String,Object>> users = new ArrayList<>();
+        int count = 0;
         try (Connection        conn = getConnection();
-             PreparedStatement ps   = conn.prepareStatement(sql);
-             ResultSet          rs   = ps.executeQuery()) {
-            while (rs.next()) {
-                Map<String,Object> u = new HashMap<>();
-                u.put("userID",         rs.getInt("userID"));
-                u.put("username",       rs.getString("username"));
-                u.put("email",          rs.getString("email"));
-                u.put("hashed_password",rs.getString("hashed_password"));
-                u.put("preferences",    rs.getString("preferences"));
-                users.add(u);
+             PreparedStatement ps   = prepare(conn, sql)) {
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(UserRow.MAPPER.map(rs));
+                    count++;
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return users;
+        return count;
+    }
+
+    /**
+     * Lists one page of users ordered by ID, starting after {@code afterId}.
+     * Uses keyset pagination ({@code WHERE userID > ? ORDER BY userID LIMIT ?}), so every
+     * page is a primary-key range scan regardless of table size.
+     *
+     * @param afterId    cursor from the previous page, or {@link Page#FIRST}
+     * @param limit      maximum rows on the page (clamped to 1..{@value #MAX_PAGE_SIZE})
+     * @param projection which columns to load; {@link UserRow.Projection#SUMMARY} skips the blobs
+     * @return the page; empty on error
+     */
+    public Page<UserRow> listUsersPage(int afterId, int limit, UserRow.Projection projection) {
+        int pageSize = clampPageSize(limit);
+        String sql = ""
+                + "SELECT " + projection.columns()
+                + "  FROM users "
+                + " WHERE userID > ? "
+                + " ORDER BY userID "
+                + " LIMIT ?";
+        List<UserRow> users = new ArrayList<>(pageSize + 1);
+        try (Connection        conn = getConnection();
+             PreparedStatement ps   = prepare(conn, sql)) {
+            ps.setInt(1, afterId);
+            ps.setInt(2, pageSize + 1);   // one extra row tells us whether another page exists
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    users.add(projection.mapper().map(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new Page<>(List.of(), afterId, false);
+        }
+        boolean hasMore = users.size() > pageSize;
+        if (hasMore) {
+            users.remove(pageSize);
+        }
+        int next = users.isEmpty() ? afterId : users.get(users.size() - 1).userId();
+        return new Page<>(users, next, hasMore);
     }
 
     /**
@@ -108,33 +538,100 @@ public class AzureDBConnector {
      */
     // 5) Insert a brand‑new user
     public void insertUser(String username, String email, String hashedPassword) {
+        try {
+            insertUserReturning(username, email, hashedPassword);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Inserts a new user and returns the stored row in the same round trip: the new
+     * userID comes back as a generated key, and a taken username is reported by the
+     * unique index on {@code users.username} instead of a separate lookup. Until the
+     * migration that creates that index is recorded as applied, the name is looked up
+     * first instead.
+     *
+     * @param username       the username
+     * @param email          the user's email
+     * @param hashedPassword the hashed password
+     * @return the new user's row, or null if the username is already taken
+     * @throws SQLException if the insert fails for any other reason
+     */
+    public UserRow insertUserReturning(String username, String email, String hashedPassword)
+            throws SQLException {
+        // 1) without the unique index nothing stops a duplicate, so check first
+        if (!schemaApplied(USERNAME_INDEX_VERSION) && queryUsernameExists(username)) {
+            return null;
+        }
+
+        // 2) insert; a duplicate on the username index means the name is taken
         String sql = ""
-                + "INSERT INTO users(username, email, hashed_password) "
-                + "VALUES (?,?,?)";
+                + "INSERT INTO users(username, email, hashed_password, preferences) "
+                + "VALUES (?,?,?,?)";
         try (Connection        conn = getConnection();
-             PreparedStatement ps   = conn.prepareStatement(sql)) {
+             PreparedStatement ps   = prepare(conn, sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, username);
             ps.setString(2, email);
             ps.setString(3, hashedPassword);
+            ps.setString(4, NEW_USER_PREFERENCES);
             ps.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("Insert into users returned no generated key");
+                }
+                return new UserRow(keys.getInt(1), username, email, hashedPassword, NEW_USER_PREFERENCES);
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            if (e.getErrorCode() == DUPLICATE_KEY && String.valueOf(e.getMessage()).contains(USERNAME_INDEX)) {
+                return null;   // username taken
+            }
+            throw e;       // any other constraint is a real failure
+        }
+    }
+
+    /**
+     * Creates an account and signs it in, with a single statement sent to the server.
+     *
+     * @param username       the username
+     * @param email          the user's email
+     * @param hashedPassword the hashed password
+     * @return true if the account was created, false if the username is already taken
+     * @throws SQLException if the account could not be created for any other reason
+     */
+    public boolean signUpAndSetSession(String username, String email, String hashedPassword)
+            throws SQLException {
+        // 1) insert; the unique index decides whether the name is free
+        UserRow row = insertUserReturning(username, email, hashedPassword);
+        if (row == null) {
+            return false;
         }
+
+        // 2) the row we just wrote is the session; no need to read it back
+        replica.saveUser(row);
+        SessionManager.getInstance().setCurrentUser(row.toUser());
+        replica.startSync(row.userId(), row.username());
+        return true;
     }
 
     // —— Preference Methods —— //
 
     /**
-     * Retrieves the JSON preferences for a given user.
+     * Retrieves the JSON preferences for a given user, from the local replica when it
+     * has them.
      *
      * @param userId ID of the user
      * @return JSON string of preferences
      */
     // 6) Load the JSON blob of prefs for one user
     public String getUserPreferences(int userId) {
+        String local = replica.getPreferences(userId);
+        if (local != null) {
+            return local;
+        }
         String sql = "SELECT preferences FROM users WHERE userID = ?";
         try (Connection        conn = getConnection();
-             PreparedStatement ps   = conn.prepareStatement(sql)) {
+             PreparedStatement ps   = prepare(conn, sql)) {
             ps.setInt(1, userId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -149,25 +646,42 @@ public class AzureDBConnector {
 
 
     /**
-     * Updates the user preferences in JSON format.
+     * Updates the user preferences in JSON format. The local replica is updated first;
+     * if the server cannot be reached, the background sync pushes the change later.
+     * The session is updated from the values written rather than by re-reading the row.
      *
      * @param userId    ID of the user
      * @param prefsJson JSON string of preferences
      */
     public void updateUserPreferences(int userId, String prefsJson) {
+        replica.savePreferences(userId, prefsJson);
+        try {
+            pushUserPreferences(userId, prefsJson);
+            replica.markPreferencesSynced(userId, prefsJson);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        SessionManager session = SessionManager.getInstance();
+        User current = session.getCurrentUser();
+        if (current != null && current.getUserID() == userId) {
+            session.setCurrentUser(new User(current.getUserID(), current.getUsername(),
+                    current.getEmail(), current.getHashedPassword(), prefsJson));
+        }
+    }
+
+    // writes preferences to the server only; used directly by the replica's sync
+    void pushUserPreferences(int userId, String prefsJson) throws SQLException {
         String sql = ""
                 + "UPDATE users "
                 + "   SET preferences = ? "
                 + " WHERE userID      = ?";
         try (Connection conn = getConnection();
-             PreparedStatement ps   = conn.prepareStatement(sql)) {
+             PreparedStatement ps   = prepare(conn, sql)) {
             ps.setString(1, prefsJson);
             ps.setInt(2, userId);
             ps.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
-        refreshSession();
     }
 
     // —— Fridge‑config Methods (JSON‑blob approach) —— //
@@ -184,8 +698,8 @@ public class AzureDBConnector {
                 + "INSERT INTO fridge_configs(user_id, name, items) "
                 + "VALUES (?,?,?)";
         try (Connection           conn = getConnection();
-             PreparedStatement    ps   = conn.prepareStatement(
-                     sql, Statement.RETURN_GENERATED_KEYS)) {
+             PreparedStatement    ps   = prepare(
+                     conn, sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, userId);
             ps.setString(2, name);
             ps.setString(3, itemsJson);
@@ -205,31 +719,87 @@ public class AzureDBConnector {
      * Lists all fridge configurations for a given user.
      *
      * @param userId ID of the user
-     * @return List of fridge config maps (id, name, created_at)
+     * @return List of fridge config rows (id, name, created_at)
      */
     // 9) List all fridge‑snapshots for a user (id + name + timestamp)
-    public List<Map<String,Object>> listFridgeConfigs(int userId) {
+    public List<FridgeConfigRow> listFridgeConfigs(int userId) {
+        List<FridgeConfigRow> configs = new ArrayList<>();
+        forEachFridgeConfig(userId, configs::add);
+        return configs;
+    }
+
+    /**
+     * Streams a user's fridge configurations to {@code action} using a server-side
+     * cursor instead of building a list.
+     *
+     * @param userId ID of the user
+     * @param action callback invoked once per row
+     * @return number of rows processed
+     */
+    public int forEachFridgeConfig(int userId, Consumer<FridgeConfigRow> action) {
         String sql = ""
-                + "SELECT id, name, created_at "
+                + "SELECT " + FridgeConfigRow.COLUMNS
                 + "  FROM fridge_configs "
                 + " WHERE user_id = ?";
-        List<Map<String,Object>> configs = new ArrayList<>();
+        int count = 0;
         try (Connection        conn = getConnection();
-             PreparedStatement ps   = conn.prepareStatement(sql)) {
+             PreparedStatement ps   = prepare(conn, sql)) {
             ps.setInt(1, userId);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    Map<String,Object> c = new HashMap<>();
-                    c.put("id",         rs.getInt("id"));
-                    c.put("name",       rs.getString("name"));
-                    c.put("created_at", rs.getTimestamp("created_at"));
-                    configs.add(c);
+                    action.accept(FridgeConfigRow.MAPPER.map(rs));
+                    count++;
                 }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return configs;
+        return count;
+    }
+
+    /**
+     * Lists one page of a user's fridge configurations ordered by ID, starting after
+     * {@code afterId}. The items blob is never loaded here.
+     *
+     * @param userId  ID of the user
+     * @param afterId cursor from the previous page, or {@link Page#FIRST}
+     * @param limit   maximum rows on the page (clamped to 1..{@value #MAX_PAGE_SIZE})
+     * @return the page; empty on error
+     */
+    public Page<FridgeConfigRow> listFridgeConfigsPage(int userId, int afterId, int limit) {
+        int pageSize = clampPageSize(limit);
+        String sql = ""
+                + "SELECT " + FridgeConfigRow.COLUMNS
+                + "  FROM fridge_configs "
+                + " WHERE user_id = ? AND id > ? "
+                + " ORDER BY id "
+                + " LIMIT ?";
+        List<FridgeConfigRow> configs = new ArrayList<>(pageSize + 1);
+        try (Connection        conn = getConnection();
+             PreparedStatement ps   = prepare(conn, sql)) {
+            ps.setInt(1, userId);
+            ps.setInt(2, afterId);
+            ps.setInt(3, pageSize + 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    configs.add(FridgeConfigRow.MAPPER.map(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new Page<>(List.of(), afterId, false);
+        }
+        boolean hasMore = configs.size() > pageSize;
+        if (hasMore) {
+            configs.remove(pageSize);
+        }
+        int next = configs.isEmpty() ? afterId : configs.get(configs.size() - 1).id();
+        return new Page<>(configs, next, hasMore);
+    }
+
+    private static int clampPageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
     }
 
     /**
@@ -242,7 +812,7 @@ public class AzureDBConnector {
     public String getFridgeConfigItems(int configId) {
         String sql = "SELECT items FROM fridge_configs WHERE id = ?";
         try (Connection        conn = getConnection();
-             PreparedStatement ps   = conn.prepareStatement(sql)) {
+             PreparedStatement ps   = prepare(conn, sql)) {
             ps.setInt(1, configId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -257,33 +827,50 @@ public class AzureDBConnector {
 
     /**
      * Authenticates the user using hashed password and sets the session if valid.
+     * The server is always asked first. Only if it cannot be reached is the login checked
+     * against the local replica, which accepts it if this machine has verified the same
+     * login online before.
      *
      * @param username             the username
      * @param providedPasswordHash the hashed password to check
      * @return true if authentication is successful
      */
     public boolean authenticateAndSetSession(String username, String providedPasswordHash) {
-        // 1) fetch DB record as a Map
-        Map<String,Object> userMap = getUserByUsername(username);
-        if (userMap == null) {
+        // 1) fetch the DB record
+        UserRow row;
+        try {
+            row = queryUserByUsername(username);
+        } catch (SQLException e) {
+            // 2) server unreachable: fall back to a login verified online earlier
+            System.out.println("Database unreachable, checking the offline login: " + e.getMessage());
+            row = replica.offlineLogin(username, providedPasswordHash);
+            if (row == null) {
+                return false;
+            }
+            SessionManager.getInstance().setCurrentUser(row.toUser());
+            replica.startSync(row.userId(), row.username());
+            return true;
+        }
+        if (row == null) {
+            replica.forgetUser(username);
             return false;  // user not found
         }
 
-        // 2) compare hashes
-        String storedHash = (String) userMap.get("hashed_password");
-        if (!storedHash.equals(providedPasswordHash)) {
+        // 3) compare hashes
+        if (!row.hashedPassword().equals(providedPasswordHash)) {
             return false;  // bad password
         }
+        replica.saveUser(row);
+        replica.rememberLogin(username, providedPasswordHash);
+        UserRow merged = replica.findUser(username);
+        if (merged != null) {
+            row = new UserRow(row.userId(), row.username(), row.email(), row.hashedPassword(),
+                    merged.preferences());   // keeps preferences saved offline
+        }
 
-        // 3) build a User object and set it in the session
-        User user = new User(
-                (Integer)   userMap.get("userID"),
-                (String)    userMap.get("username"),
-                (String)    userMap.get("email"),
-                storedHash,
-                (String)    userMap.get("preferences")
-        );
-        SessionManager.getInstance().setCurrentUser(user);
+        // 4) build a User object, set it in the session and keep the replica current
+        SessionManager.getInstance().setCurrentUser(row.toUser());
+        replica.startSync(row.userId(), row.username());
         return true;
 
     }
@@ -300,22 +887,24 @@ public class AzureDBConnector {
             return false;     // no session to refresh
         }
 
-        // 2) Fetch the fresh record by userID
-        String userID = current.getUsername();
-        Map<String,Object> userMap = getUserByUsername(userID);
-        if (userMap == null) {
+        // 2) Fetch the fresh record by username; fall back to the local copy when offline
+        UserRow row = getUserByUsername(current.getUsername());
+        if (row != null) {
+            replica.saveUser(row);
+        }
+        UserRow local = replica.findUser(current.getUsername());
+        if (row == null) {
+            row = local;      // offline: the local copy, without the password hash
+        } else if (local != null) {
+            row = new UserRow(row.userId(), row.username(), row.email(), row.hashedPassword(),
+                    local.preferences());   // includes preferences not yet on the server
+        }
+        if (row == null) {
             return false;     // user no longer exists?
         }
 
         // 3) Rebuild and replace the User object
-        User updated = new User(
-                (Integer) userMap.get("userID"),
-                (String)  userMap.get("username"),
-                (String)  userMap.get("email"),
-                (String)  userMap.get("hashed_password"),
-                (String)  userMap.get("preferences")
-        );
-        SessionManager.getInstance().setCurrentUser(updated);
+        SessionManager.getInstance().setCurrentUser(row.toUser());
         return true;
     }
 
@@ -326,18 +915,25 @@ public class AzureDBConnector {
      * @return true if username exists, false otherwise
      */
     public boolean usernameExists(String username) {
+        try {
+            return queryUsernameExists(username);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            // you may want to rethrow or handle more gracefully
+            return false;
+        }
+    }
+
+    // same lookup, but a failure is passed on rather than read as "free"
+    boolean queryUsernameExists(String username) throws SQLException {
         String sql = "SELECT 1 FROM users WHERE username = ? LIMIT 1";
         try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = prepare(conn, sql)) {
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {
                 // if we get any row back, the username is taken
                 return rs.next();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            // you may want to rethrow or handle more gracefully
-            return false;
         }
     }
 
@@ -348,15 +944,38 @@ public class AzureDBConnector {
      * @return List of item names
      */
     public List<String> getFridgeItems(int userId) {
-        String sql = "SELECT name FROM fridge_configs WHERE user_id = ?";
+        String sql = "SELECT name FROM fridge_items WHERE user_id = ? ORDER BY id";
         List<String> items = new ArrayList<>();
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = schemaConnection();
+             PreparedStatement ps = prepare(conn, sql)) {
             ps.setInt(1, userId);
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    items.add(rs.getString("name"));
+                    items.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return items;
+    }
+
+    /**
+     * Retrieves a user's fridge items with their quantity and weight.
+     *
+     * @param userId ID of the user
+     * @return List of items, in the order they were added
+     */
+    public List<Item> getFridgeItemDetails(int userId) {
+        String sql = "SELECT name, quantity, weight FROM fridge_items WHERE user_id = ? ORDER BY id";
+        List<Item> items = new ArrayList<>();
+        try (Connection conn = schemaConnection();
+             PreparedStatement ps = prepare(conn, sql)) {
+            ps.setInt(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    items.add(new Item(rs.getString(1), rs.getInt(2), rs.getString(3)));
                 }
             }
         } catch (SQLException e) {
@@ -365,6 +984,38 @@ public class AzureDBConnector {
         return items;
     }
 
+    /**
+     * Returns a cheap fingerprint of a user's fridge items: the row count plus an
+     * order-independent checksum (XOR of a 64-bit hash per row) over each item's id, name,
+     * quantity and weight. Any add, delete or rename changes it, however close together
+     * they happen (a timestamp with one-second precision would miss those), so
+     * {@link FridgeCache} can tell whether its copy is still current without
+     * re-reading every item.
+     *
+     * @param userId ID of the user
+     * @return the version fingerprint, or null on error
+     */
+    public String getFridgeVersion(int userId) {
+        String sql = ""
+                + "SELECT COUNT(*), "
+                + "       BIT_XOR(CAST(CONV(LEFT(MD5(CONCAT_WS(':', id, name, quantity, IFNULL(weight, ''))), 16), "
+                + "                         16, 10) AS UNSIGNED)) "
+                + "  FROM fridge_items "
+                + " WHERE user_id = ?";
+        try (Connection conn = schemaConnection();
+             PreparedStatement ps = prepare(conn, sql)) {
+            ps.setInt(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1) + ":" + rs.getString(2);   // unsigned 64-bit, so read as text
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
     /**
      * Adds a fridge item (by name) for a user.
      *
@@ -373,15 +1024,12 @@ public class AzureDBConnector {
      * @return true if item is added successfully
      */
     public boolean addFridgeItem(int userId, String name) {
+        String sql = fridgeMutationSql(FridgeMutation.Type.ADD);
+        try (Connection conn = schemaConnection();
 
-        String sql = "INSERT INTO fridge_configs (user_id, name, created_at) VALUES (?, ?, ?)";
-        try (Connection conn = getConnection();
-
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = prepare(conn, sql)) {
 
-            ps.setInt(1, userId);
-            ps.setString(2, name);
-            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            bindFridgeMutation(ps, userId, FridgeMutation.add(name));
 
             int rowsAffected = ps.executeUpdate();
 
@@ -400,13 +1048,12 @@ public class AzureDBConnector {
      * @return true if deletion was successful
      */
     public boolean deleteFridgeItemByName(int userId, String name) {
-        String sql = "DELETE FROM fridge_configs WHERE user_id = ? AND name = ?";
+        String sql = fridgeMutationSql(FridgeMutation.Type.DELETE);
 
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = schemaConnection();
+             PreparedStatement ps = prepare(conn, sql)) {
 
-            ps.setInt(1, userId);
-            ps.setString(2, name);
+            bindFridgeMutation(ps, userId, FridgeMutation.delete(name));
 
             int rowsAffected = ps.executeUpdate();
 
@@ -426,16 +1073,12 @@ public class AzureDBConnector {
      * @return true if update was successful
      */
     public boolean updateFridgeItemByName(int userId, String oldName, String newName) {
-        String sql = "UPDATE fridge_configs SET name = ?, created_at = ? WHERE user_id = ? AND name = ?";
-        Timestamp newCreatedAt = new Timestamp(System.currentTimeMillis());
+        String sql = fridgeMutationSql(FridgeMutation.Type.RENAME);
 
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = schemaConnection();
+             PreparedStatement ps = prepare(conn, sql)) {
 
-            ps.setString(1, newName);
-            ps.setTimestamp(2, newCreatedAt);
-            ps.setInt(3, userId);
-            ps.setString(4, oldName);
+            bindFridgeMutation(ps, userId, FridgeMutation.rename(oldName, newName));
 
             int rowsAffected = ps.executeUpdate();
 
@@ -446,4 +1089,116 @@ public class AzureDBConnector {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Applies a list of fridge changes for one user in a single transaction.
+     * Consecutive changes of the same kind are sent as one JDBC batch, so a burst
+     * of edits costs a few round trips instead of one per item.
+     *
+     * @param userId    ID of the user
+     * @param mutations changes to apply, in order
+     * @return true if every change was committed, false if the transaction was rolled back
+     */
+    public boolean applyFridgeMutations(int userId, List<FridgeMutation> mutations) {
+        try {
+            writeFridgeMutations(userId, mutations);
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Async variant of {@link #applyFridgeMutations(int, List)}. Completes exceptionally
+     * with the error if the transaction was rolled back, so callers can tell an
+     * unreachable server ({@link #isUnreachable(Throwable)}) from rejected changes.
+     */
+    public CompletableFuture<Void> applyFridgeMutationsAsync(int userId, List<FridgeMutation> mutations) {
+        return callAsync(() -> {
+            writeFridgeMutations(userId, mutations);
+            return null;
+        });
+    }
+
+    /**
+     * @param error a failure from a connector call, possibly wrapped by a future
+     * @return true if it means the server could not be reached or did not answer in time,
+     *         as opposed to the server refusing the statement
+     */
+    public static boolean isUnreachable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof TimeoutException
+                    || t instanceof SQLTransientException
+                    || t instanceof SQLNonTransientConnectionException
+                    || t instanceof SQLRecoverableException) {
+                return true;
+            }
+            // SQLState class 08: connection exception
+            if (t instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // applyFridgeMutations without the error handling; consecutive same-type changes share a batch
+    private void writeFridgeMutations(int userId, List<FridgeMutation> mutations) throws SQLException {
+        if (mutations.isEmpty()) {
+            return;
+        }
+        try (Connection conn = schemaConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int i = 0;
+                while (i < mutations.size()) {
+                    // 1) collect the run of same-type mutations starting at i
+                    FridgeMutation.Type type = mutations.get(i).type();
+                    int end = i;
+                    while (end < mutations.size() && mutations.get(end).type() == type) {
+                        end++;
+                    }
+
+                    // 2) send the run as one batch
+                    try (PreparedStatement ps = prepare(conn, fridgeMutationSql(type))) {
+                        for (FridgeMutation m : mutations.subList(i, end)) {
+                            bindFridgeMutation(ps, userId, m);
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                    i = end;
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // statements shared by addFridgeItem / deleteFridgeItemByName / updateFridgeItemByName
+    // and the batched applyFridgeMutations; the WHERE clauses seek idx_fridge_items_user_name
+    private static String fridgeMutationSql(FridgeMutation.Type type) {
+        return switch (type) {
+            case ADD    -> "INSERT INTO fridge_items (user_id, name) VALUES (?, ?)";
+            case DELETE -> "DELETE FROM fridge_items WHERE user_id = ? AND name = ?";
+            case RENAME -> "UPDATE fridge_items SET name = ? WHERE user_id = ? AND name = ?";
+        };
+    }
+
+    private static void bindFridgeMutation(PreparedStatement ps, int userId, FridgeMutation m)
+            throws SQLException {
+        switch (m.type()) {
+            case ADD, DELETE -> {
+                ps.setInt(1, userId);
+                ps.setString(2, m.name());
+            }
+            case RENAME -> {
+                ps.setString(1, m.newName());
+                ps.setInt(2, userId);
+                ps.setString(3, m.name());
+            }
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package edu.farmingdale.recipegenerator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small, bounded JDBC connection pool used by {@link AzureDBConnector}.
+ *
+ * Opening a connection to Azure MySQL costs a TCP connect, a TLS handshake and a
+ * MySQL authentication exchange. The pool keeps a handful of those connections warm
+ * and hands out lightweight wrappers whose {@code close()} returns the connection to
+ * the pool instead of closing the socket.
+ *
+ * Features:
+ * - bounded size (callers wait up to {@code connectionTimeoutMs} for a free slot)
+ * - validation on borrow for connections that have been idle for a while
+ * - idle eviction down to {@code minIdle} and a hard max lifetime per connection
+ * - pool statistics (active / idle / waiting threads, borrow wait times)
+ * - a per-connection {@link StatementCache} so repeated SQL skips the prepare step
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /**
+     * Tunable pool settings. Every value can be overridden with a system property
+     * (see {@link #fromSystemProperties()}).
+     *
+     * @param maxPoolSize          maximum number of physical connections
+     * @param minIdle              number of idle connections the housekeeper keeps warm
+     * @param connectionTimeoutMs  how long a borrower waits for a free connection
+     * @param idleTimeoutMs        idle time after which a connection above minIdle is closed
+     * @param maxLifetimeMs        age after which a connection is retired
+     * @param validationTimeoutSec timeout passed to {@link Connection#isValid(int)}
+     * @param validationIntervalMs connections used more recently than this are not re-validated
+     * @param statementCacheSize   prepared statements cached per connection (0 disables the cache)
+     */
+    public record Config(int maxPoolSize,
+                         int minIdle,
+                         long connectionTimeoutMs,
+                         long idleTimeoutMs,
+                         long maxLifetimeMs,
+                         int validationTimeoutSec,
+                         long validationIntervalMs,
+                         int statementCacheSize) {
+
+        /**
+         * Builds a config from {@code flavorbot.db.pool.*} system properties, falling back
+         * to defaults that suit a single desktop client.
+         *
+         * @return the pool configuration
+         */
+        public static Config fromSystemProperties() {
+            return new Config(
+                    Integer.getInteger("flavorbot.db.pool.maxSize",            5),
+                    Integer.getInteger("flavorbot.db.pool.minIdle",            1),
+                    Long.getLong("flavorbot.db.pool.connectionTimeoutMs",  10_000L),
+                    Long.getLong("flavorbot.db.pool.idleTimeoutMs",       300_000L),
+                    Long.getLong("flavorbot.db.pool.maxLifetimeMs",     1_800_000L),
+                    Integer.getInteger("flavorbot.db.pool.validationTimeoutSec", 3),
+                    Long.getLong("flavorbot.db.pool.validationIntervalMs",    500L),
+                    Integer.getInteger("flavorbot.db.pool.statementCacheSize",  32)
+            );
+        }
+    }
+
+    /**
+     * Point-in-time snapshot of the pool counters.
+     *
+     * @param active          connections currently borrowed
+     * @param idle            connections waiting in the pool
+     * @param total           physical connections currently open
+     * @param waiting         threads currently waiting for a connection
+     * @param borrows         total successful borrows
+     * @param created         physical connections opened so far
+     * @param closed          physical connections closed so far (evicted, expired or broken)
+     * @param timeouts        borrows that gave up after {@code connectionTimeoutMs}
+     * @param avgWaitMillis   average time a borrower waited for a connection
+     * @param maxWaitMillis   longest time a borrower waited for a connection
+     * @param statementHits   prepares served from a statement cache
+     * @param statementMisses prepares that had to go to the server
+     * @param statementEvictions cached statements closed to stay within the LRU bound
+     */
+    public record Stats(int active, int idle, int total, int waiting,
+                        long borrows, long created, long closed, long timeouts,
+                        double avgWaitMillis, double maxWaitMillis,
+                        long statementHits, long statementMisses, long statementEvictions) { }
+
+    // one physical connection plus the bookkeeping the pool needs for it
+    private static final class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        final long createdAt = System.nanoTime();
+        volatile long lastUsedAt = createdAt;
+
+        PooledConnection(Connection physical, StatementCache statements) {
+            this.physical   = physical;
+            this.statements = statements;
+        }
+    }
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final Config config;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+
+    private final AtomicInteger active   = new AtomicInteger();
+    private final AtomicInteger total    = new AtomicInteger();
+    private final AtomicInteger waiting  = new AtomicInteger();
+    private final AtomicLong    borrows  = new AtomicLong();
+    private final AtomicLong    created  = new AtomicLong();
+    private final AtomicLong    closed   = new AtomicLong();
+    private final AtomicLong    timeouts = new AtomicLong();
+    private final AtomicLong    waitNanosTotal = new AtomicLong();
+    private final AtomicLong    waitNanosMax   = new AtomicLong();
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a pool for the given JDBC URL and credentials. Connections are opened
+     * lazily; the background housekeeper tops the pool up to {@code minIdle}.
+     *
+     * @param url      JDBC URL
+     * @param username database user
+     * @param password database password
+     * @param config   pool settings
+     */
+    public ConnectionPool(String url, String username, String password, Config config) {
+        this.url      = url;
+        this.username = username;
+        this.password = password;
+        this.config   = config;
+        this.permits  = new Semaphore(config.maxPoolSize(), true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000L, Math.min(config.idleTimeoutMs(), 30_000L));
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if no idle connection
+     * is available and the pool is not full. Closing the returned connection hands
+     * it back to the pool.
+     *
+     * @return a pooled connection
+     * @throws SQLException if no connection became available in time or opening one failed
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+
+        // 1) wait for a free slot and record how long that took
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(config.connectionTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            timeouts.incrementAndGet();
+            throw new SQLTransientConnectionException(
+                    "No database connection available after " + config.connectionTimeoutMs() + " ms");
+        }
+
+        // 2) reuse a warm connection if one passes the checks, otherwise open a new one
+        try {
+            PooledConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                if (isUsable(pc)) {
+                    break;
+                }
+                discard(pc);
+            }
+            if (pc == null) {
+                pc = open();
+            }
+            recordWait(System.nanoTime() - start);
+            active.incrementAndGet();
+            borrows.incrementAndGet();
+            return wrap(pc);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return a snapshot of the current pool counters
+     */
+    public Stats getStats() {
+        long n = borrows.get();
+        return new Stats(
+                active.get(),
+                idle.size(),
+                total.get(),
+                waiting.get(),
+                n,
+                created.get(),
+                closed.get(),
+                timeouts.get(),
+                n == 0 ? 0.0 : waitNanosTotal.get() / (double) n / 1_000_000.0,
+                waitNanosMax.get() / 1_000_000.0,
+                statementCounters.hits(),
+                statementCounters.misses(),
+                statementCounters.evictions()
+        );
+    }
+
+    /**
+     * Closes every idle connection and stops the housekeeper. Connections that are
+     * still borrowed are closed when their borrower returns them.
+     */
+    @Override
+    public void close() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            discard(pc);
+        }
+    }
+
+    // —— internals —— //
+
+    private PooledConnection open() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, username, password);
+        total.incrementAndGet();
+        created.incrementAndGet();
+        return new PooledConnection(physical,
+                new StatementCache(physical, config.statementCacheSize(), statementCounters));
+    }
+
+    private void discard(PooledConnection pc) {
+        total.decrementAndGet();
+        closed.incrementAndGet();
+        pc.statements.closeAll();
+        try {
+            pc.physical.close();
+        } catch (SQLException e) {
+            // already broken; nothing more to do
+        }
+    }
+
+    // validation on borrow: expired connections are dropped, stale ones are pinged
+    private boolean isUsable(PooledConnection pc) {
+        long now = System.nanoTime();
+        if (now - pc.createdAt > TimeUnit.MILLISECONDS.toNanos(config.maxLifetimeMs())) {
+            return false;
+        }
+        if (now - pc.lastUsedAt <= TimeUnit.MILLISECONDS.toNanos(config.validationIntervalMs())) {
+            return true;
+        }
+        try {
+            return pc.physical.isValid(config.validationTimeoutSec());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        active.decrementAndGet();
+        pc.lastUsedAt = System.nanoTime();
+        try {
+            boolean broken = pc.physical.isClosed();
+            if (!broken && !pc.physical.getAutoCommit()) {
+                // never hand out a connection with a half-finished transaction
+                pc.physical.rollback();
+                pc.physical.setAutoCommit(true);
+            }
+            if (broken || shutdown) {
+                discard(pc);
+            } else {
+                idle.offerFirst(pc);
+            }
+        } catch (SQLException e) {
+            discard(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waitNanosTotal.addAndGet(nanos);
+        waitNanosMax.accumulateAndGet(nanos, Math::max);
+    }
+
+    // idle eviction, max-lifetime retirement and minIdle warm-up
+    private void housekeep() {
+        try {
+            long now = System.nanoTime();
+            long idleLimit = TimeUnit.MILLISECONDS.toNanos(config.idleTimeoutMs());
+            long lifeLimit = TimeUnit.MILLISECONDS.toNanos(config.maxLifetimeMs());
+
+            // oldest-used connections sit at the tail of the deque
+            for (PooledConnection pc : idle) {
+                boolean expired = now - pc.createdAt > lifeLimit;
+                boolean idleTooLong = now - pc.lastUsedAt > idleLimit && idle.size() > config.minIdle();
+                if ((expired || idleTooLong) && idle.remove(pc)) {
+                    discard(pc);
+                }
+            }
+
+            while (!shutdown && idle.size() < config.minIdle() && permits.tryAcquire()) {
+                try {
+                    idle.offerLast(open());
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println("Connection pool warm-up failed: " + e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // only prepareStatement(String) and prepareStatement(String, int autoGeneratedKeys) go through the cache
+    private static boolean isCacheable(Method method) {
+        Class<?>[] params = method.getParameterTypes();
+        return params.length == 1 || (params.length == 2 && params[1] == int.class);
+    }
+
+    // hands out a Connection view whose close() returns the physical connection to the pool
+    private Connection wrap(PooledConnection pc) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean returned;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (method.getDeclaringClass() == Object.class) {
+                    return switch (name) {
+                        case "equals"   -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        default         -> "Pooled[" + pc.physical + "]";
+                    };
+                }
+                if (name.equals("close")) {
+                    if (!returned) {
+                        returned = true;
+                        release(pc);
+                    }
+                    return null;
+                }
+                if (name.equals("isClosed")) {
+                    return returned || pc.physical.isClosed();
+                }
+                if (returned) {
+                    throw new SQLException("Connection has already been returned to the pool");
+                }
+                if (name.equals("prepareStatement") && isCacheable(method)) {
+                    int keys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                    return pc.statements.prepare((Connection) proxy, (String) args[0], keys);
+                }
+                try {
+                    return method.invoke(pc.physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+}
@@ -0,0 +1,208 @@
+package edu.farmingdale.recipegenerator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The list of common ingredients shown by "Show Fridge", kept on disk and refreshed
+ * in the background (stale-while-revalidate).
+ *
+ * {@link #getIngredients()} never touches the network: it returns the list saved in
+ * {@code ~/.flavorbot/default-ingredients.json}, or a built-in list before the first
+ * fetch has finished. The file records which provider the list came from, and a list
+ * from another one (e.g. a stand-in server) is not used. A daemon thread asks OpenAI
+ * for a fresh list whenever the saved one is older than the refresh interval; the new
+ * list is served from the next call on.
+ * After a failed fetch (offline, no API key) the next one waits, twice as long after
+ * each further failure, so a stale list does not mean a request every minute.
+ */
+public class DefaultIngredients {
+    private static final Path FILE = Path.of(System.getProperty("user.home"), ".flavorbot", "default-ingredients.json");
+
+    // how old the saved list may get before it is fetched again
+    private static final long REFRESH_AFTER_MS =
+            TimeUnit.HOURS.toMillis(Long.getLong("flavorbot.defaultIngredients.refreshHours", 24L));
+
+    // wait after a failed fetch, doubling per failure up to the maximum
+    private static final long FIRST_RETRY_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_RETRY_MS   = TimeUnit.HOURS.toMillis(1);
+
+    // shown until the first list has been fetched
+    private static final List<String> BUILT_IN = List.of(
+            "Eggs", "Milk", "Butter", "Flour", "Sugar", "Salt", "Black pepper", "Olive oil",
+            "Garlic", "Onion", "Tomatoes", "Potatoes", "Carrots", "Rice", "Pasta",
+            "Chicken breast", "Cheddar cheese", "Lemon", "Bell pepper", "Spinach");
+
+    // --- single shared instance (after the constants the constructor reads) ---
+    private static final DefaultIngredients INSTANCE = new DefaultIngredients();
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "default-ingredients-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // all guarded by "this"
+    private List<String> items;
+    private long fetchedAt;
+    private CompletableFuture<List<String>> refreshing;
+    private int  failures;      // fetches failed in a row
+    private long retryAt;       // no fetch before this after a failure
+
+    // private ctor → use getInstance()
+    private DefaultIngredients() {
+        load();
+        // check once a minute whether the list has gone stale
+        timer.scheduleWithFixedDelay(this::refreshIfStale, 0, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @return the one-and-only DefaultIngredients
+     */
+    public static DefaultIngredients getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the current list right away, without waiting for the network. If it is
+     * stale, a background refresh is started.
+     *
+     * @return a copy of the current ingredient list
+     */
+    public synchronized List<String> getIngredients() {
+        if (isStale()) {
+            refresh();
+        }
+        return new ArrayList<>(items);
+    }
+
+    /**
+     * @return true if the list is older than the refresh interval (or was never fetched)
+     */
+    public synchronized boolean isStale() {
+        return System.currentTimeMillis() - fetchedAt > REFRESH_AFTER_MS;
+    }
+
+    /**
+     * Fetches a new list from OpenAI in the background and saves it. Calls made while a
+     * fetch is running share it; calls made while backing off from a failed fetch get the
+     * current list without a fetch.
+     *
+     * @return a future with the new list; on failure it completes with the current list
+     */
+    public synchronized CompletableFuture<List<String>> refresh() {
+        if (refreshing != null) {
+            return refreshing;
+        }
+        if (System.currentTimeMillis() < retryAt) {
+            return CompletableFuture.completedFuture(new ArrayList<>(items));
+        }
+        // set before the fetch starts, since its completion may run right here on this thread
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        refreshing = result;
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return OpenAI.getDefaultIngredients();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, timer).whenComplete((fetched, ex) -> result.complete(finish(result, fetched, ex)));
+        return result;
+    }
+
+    // —— internals —— //
+
+    private synchronized List<String> finish(CompletableFuture<List<String>> fetch, List<String> fetched,
+                                             Throwable ex) {
+        if (refreshing == fetch) {
+            refreshing = null;
+        }
+        List<String> cleaned = ex == null ? clean(fetched) : List.of();
+        if (cleaned.isEmpty()) {
+            failures++;
+            long wait = Math.min(MAX_RETRY_MS, FIRST_RETRY_MS << Math.min(failures - 1, 16));
+            retryAt = System.currentTimeMillis() + wait;
+            System.out.println("Default ingredient refresh failed: "
+                    + (ex != null ? ex.getMessage() : "empty list")
+                    + "; next try in " + TimeUnit.MILLISECONDS.toSeconds(wait) + " s");
+            return new ArrayList<>(items);
+        }
+        failures  = 0;
+        retryAt   = 0;
+        items     = cleaned;
+        fetchedAt = System.currentTimeMillis();
+        save(items, fetchedAt);
+        return new ArrayList<>(items);
+    }
+
+    private synchronized void refreshIfStale() {
+        if (isStale()) {
+            refresh();
+        }
+    }
+
+    private synchronized void load() {
+        items = BUILT_IN;
+        if (!Files.isRegularFile(FILE)) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject(Files.readString(FILE, StandardCharsets.UTF_8));
+            List<String> saved = new ArrayList<>();
+            JSONArray array = json.getJSONArray("items");
+            for (int i = 0; i < array.length(); i++) {
+                saved.add(array.getString(i));
+            }
+            if (!OpenAI.getProvider().name().equals(json.optString("provider"))) {
+                return;   // fetched from another provider; fetch our own
+            }
+            if (!saved.isEmpty()) {
+                items     = saved;
+                fetchedAt = json.getLong("fetchedAt");
+            }
+        } catch (IOException | JSONException e) {
+            System.out.println("Ignoring unreadable " + FILE + ": " + e.getMessage());
+        }
+    }
+
+    private static void save(List<String> items, long fetchedAt) {
+        try {
+            Files.createDirectories(FILE.getParent());
+            JSONObject json = new JSONObject()
+                    .put("provider", OpenAI.getProvider().name())
+                    .put("fetchedAt", fetchedAt)
+                    .put("items", new JSONArray(items));
+            // write then rename, so a crash never leaves a half-written file
+            Path tmp = Files.createTempFile(FILE.getParent(), "default-ingredients", ".tmp");
+            Files.writeString(tmp, json.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Could not save default ingredients: " + e.getMessage());
+        }
+    }
+
+    // the model sometimes adds blank lines or bullets despite the prompt
+    private static List<String> clean(List<String> fetched) {
+        List<String> cleaned = new ArrayList<>();
+        for (String line : fetched) {
+            String name = line.replaceFirst("^\\s*(?:[-*•]|\\d+[.)])\\s*", "").trim();
+            if (!name.isEmpty()) {
+                cleaned.add(name);
+            }
+        }
+        return cleaned;
+    }
+}
@@ -0,0 +1,198 @@
+package edu.farmingdale.recipegenerator;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Decides which waiting model call is sent next when the API is busy.
+ *
+ * Calls the user is waiting for (a Generate click) are {@link Priority#INTERACTIVE};
+ * work nobody is watching (refreshing the default ingredient list) is
+ * {@link Priority#BACKGROUND}. When a slot frees up, a waiting interactive call always
+ * goes before a waiting background one, so background work queued ahead of a click
+ * does not delay it. Within a class, calls go in arrival order.
+ *
+ * Each class also has its own concurrency limit, so background work can never fill
+ * every slot. Running calls are not interrupted; only the queue is reordered.
+ *
+ * Each class's queue is bounded too: once it is full, further calls of that class are
+ * rejected right away instead of piling up, as {@link RateLimiter} does for its own queue
+ * (which the calls only reach once they have a slot).
+ */
+public class DispatchQueue {
+
+    /**
+     * Who is waiting for a call; earlier constants go first.
+     */
+    public enum Priority {
+        /** the user is waiting for the answer */
+        INTERACTIVE,
+        /** nobody is waiting; it can be sent whenever there is room */
+        BACKGROUND
+    }
+
+    /**
+     * State of one priority class.
+     *
+     * @param running    calls holding a slot
+     * @param waiting    calls queued for one
+     * @param dispatched slots handed out since startup
+     * @param overtook   of those, slots taken while calls of a lower priority were waiting
+     * @param rejected   calls turned away because the class's queue was full
+     * @param queueWait  time from asking for a slot to getting it
+     */
+    public record ClassStats(int running, int waiting, long dispatched, long overtook, long rejected,
+                             LatencyRecorder.Snapshot queueWait) { }
+
+    /**
+     * A slot to send one call in; close it once the response has been read.
+     */
+    public final class Slot implements AutoCloseable {
+        private final Priority priority;
+        private boolean closed;
+
+        private Slot(Priority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public void close() {
+            synchronized (DispatchQueue.this) {
+                if (!closed) {
+                    closed = true;
+                    classes.get(priority).running--;
+                    running--;
+                    DispatchQueue.this.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static final class PerClass {
+        final int limit;
+        final ArrayDeque<Object> queue = new ArrayDeque<>();
+        final LatencyRecorder queueWait;
+        int running;
+        long dispatched;
+        long overtook;
+        long rejected;
+
+        PerClass(int limit, int window) {
+            this.limit     = limit;
+            this.queueWait = new LatencyRecorder(window);
+        }
+    }
+
+    private final int maxRunning;
+    private final int maxQueued;
+
+    // all guarded by "this"
+    private final Map<Priority, PerClass> classes = new EnumMap<>(Priority.class);
+    private int running;
+
+    /**
+     * @param maxRunning     calls allowed to run at the same time, over all classes
+     * @param maxInteractive of those, interactive calls
+     * @param maxBackground  of those, background calls
+     * @param maxQueued      calls allowed to wait for a slot, per class
+     * @param window         recent samples kept for the queue-wait percentiles
+     */
+    public DispatchQueue(int maxRunning, int maxInteractive, int maxBackground, int maxQueued, int window) {
+        this.maxRunning = maxRunning;
+        this.maxQueued  = maxQueued;
+        classes.put(Priority.INTERACTIVE, new PerClass(maxInteractive, window));
+        classes.put(Priority.BACKGROUND, new PerClass(maxBackground, window));
+    }
+
+    /**
+     * Waits for a slot to send one call in.
+     *
+     * @param priority who is waiting for the call
+     * @return the slot; close it when the call has been answered
+     * @throws InterruptedException       if interrupted while waiting
+     * @throws RejectedExecutionException if too many calls of this class are already waiting
+     */
+    public Slot acquire(Priority priority) throws InterruptedException {
+        long start = System.nanoTime();
+        PerClass own = classes.get(priority);
+        Object ticket = new Object();
+        synchronized (this) {
+            if (own.queue.size() >= maxQueued) {
+                own.rejected++;
+                throw new RejectedExecutionException(
+                        "Too many OpenAI requests are queued; please try again in a moment");
+            }
+            own.queue.addLast(ticket);
+            try {
+                while (!mayRun(priority, ticket)) {
+                    wait();
+                }
+            } finally {
+                own.queue.remove(ticket);
+                notifyAll();   // the next in line may be able to go now
+            }
+            own.running++;
+            running++;
+            own.dispatched++;
+            if (lowerPriorityWaiting(priority)) {
+                own.overtook++;
+            }
+        }
+        own.queueWait.record((System.nanoTime() - start) / 1_000_000);
+        return new Slot(priority);
+    }
+
+    /**
+     * @return whether any call is queued for a slot
+     */
+    public synchronized boolean hasWaiting() {
+        for (PerClass c : classes.values()) {
+            if (!c.queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return state per priority class
+     */
+    public synchronized Map<Priority, ClassStats> getStats() {
+        Map<Priority, ClassStats> stats = new EnumMap<>(Priority.class);
+        classes.forEach((priority, c) -> stats.put(priority,
+                new ClassStats(c.running, c.queue.size(), c.dispatched, c.overtook, c.rejected,
+                        c.queueWait.snapshot())));
+        return stats;
+    }
+
+    // —— internals —— //
+
+    // first in its class, its class has room, and no higher class is waiting for room it could use
+    private boolean mayRun(Priority priority, Object ticket) {
+        PerClass own = classes.get(priority);
+        if (own.queue.peekFirst() != ticket || running >= maxRunning || own.running >= own.limit) {
+            return false;
+        }
+        for (Priority higher : Priority.values()) {
+            if (higher == priority) {
+                return true;
+            }
+            PerClass c = classes.get(higher);
+            if (!c.queue.isEmpty() && c.running < c.limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean lowerPriorityWaiting(Priority priority) {
+        for (Priority lower : Priority.values()) {
+            if (lower.compareTo(priority) > 0 && !classes.get(lower).queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,211 @@
+package edu.farmingdale.recipegenerator;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Per-user, read-through cache of fridge item names in front of {@link AzureDBConnector}.
+ *
+ * The first read for a user loads the items from the database; later reads (for example
+ * every time the fridge window is reopened) are served from memory without a query.
+ * Local edits queued through {@link FridgeWriteBehind} are applied to the cached list in
+ * place, so the cache never has to be thrown away because of our own writes.
+ *
+ * To pick up changes made elsewhere (another device, an admin), each entry remembers the
+ * fridge version fingerprint it was loaded at. Once an entry is older than the
+ * revalidation interval, a read still returns the cached list immediately but also
+ * compares the stored version with the server's in the background and reloads the
+ * entry if they differ.
+ *
+ * The {@link LocalReplica} sits behind the memory cache: a user missing from memory is
+ * served from the on-disk copy (and revalidated right away) before the server is asked,
+ * and every load and local edit is written through to it.
+ */
+public class FridgeCache {
+    // --- single shared instance ---
+    private static final FridgeCache INSTANCE = new FridgeCache();
+
+    // how long a cached list is trusted before its version is re-checked
+    private static final long REVALIDATE_AFTER_MS = Long.getLong("flavorbot.fridge.revalidateMs", 60_000L);
+
+    private static final Duration LOAD_TIMEOUT = Duration.ofSeconds(15);
+
+    // cached state for one user
+    private static final class Entry {
+        final List<String> items;
+        String version;          // null = our own writes landed since the last check
+        long checkedAt;
+        boolean revalidating;
+
+        Entry(List<String> items, String version, long checkedAt) {
+            this.items     = items;
+            this.version   = version;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private record Snapshot(List<String> items, String version) { }
+
+    private final AzureDBConnector connector = AzureDBConnector.getInstance();
+    private final LocalReplica replica = LocalReplica.getInstance();
+
+    // guarded by "this"
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    // bumped on every local edit, so a load that raced with an edit is not cached
+    private final Map<Integer, Integer> generations = new HashMap<>();
+
+    // private ctor → use getInstance()
+    private FridgeCache() { }
+
+    /**
+     * @return the one-and-only FridgeCache
+     */
+    public static FridgeCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a user's fridge items. A list cached in memory or in the local replica is
+     * returned as an already completed future; otherwise queued writes are flushed and
+     * the items loaded from the server.
+     *
+     * @param userId ID of the user
+     * @return a future with a copy of the item names
+     */
+    public synchronized CompletableFuture<List<String>> getItems(int userId) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            if (!entry.revalidating
+                    && System.currentTimeMillis() - entry.checkedAt > REVALIDATE_AFTER_MS) {
+                revalidate(userId, entry);
+            }
+            return CompletableFuture.completedFuture(new ArrayList<>(entry.items));
+        }
+
+        LocalReplica.Fridge local = replica.getFridge(userId);
+        if (local != null) {
+            // serve the on-disk copy now and check it against the server in the background
+            entry = new Entry(new ArrayList<>(local.items()), local.version(), 0L);
+            entries.put(userId, entry);
+            if (local.version() == null) {
+                load(userId);      // local edits since the copy: its version is unknown
+            } else {
+                revalidate(userId, entry);
+            }
+            return CompletableFuture.completedFuture(new ArrayList<>(local.items()));
+        }
+        return load(userId);
+    }
+
+    /**
+     * Applies a local edit to the cached list, if the user is cached.
+     * Mirrors the SQL semantics: deletes and renames affect every item with that name.
+     *
+     * @param userId   ID of the user
+     * @param mutation the edit
+     */
+    public synchronized void applyLocal(int userId, FridgeMutation mutation) {
+        generations.merge(userId, 1, Integer::sum);
+        replica.applyFridgeMutation(userId, mutation);
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return;
+        }
+        switch (mutation.type()) {
+            case ADD    -> entry.items.add(mutation.name());
+            case DELETE -> entry.items.removeIf(mutation.name()::equals);
+            case RENAME -> entry.items.replaceAll(
+                    item -> item.equals(mutation.name()) ? mutation.newName() : item);
+        }
+    }
+
+    /**
+     * Records that our queued edits reached the database. The cached list already
+     * contains them; only the version fingerprint is now unknown.
+     *
+     * @param userId ID of the user
+     */
+    public synchronized void markWritten(int userId) {
+        Entry entry = entries.get(userId);
+        if (entry != null) {
+            entry.version = null;
+        }
+    }
+
+    /**
+     * Drops a user's cached list so the next read goes to the database.
+     *
+     * @param userId ID of the user
+     */
+    public synchronized void invalidate(int userId) {
+        entries.remove(userId);
+        generations.merge(userId, 1, Integer::sum);
+        replica.forgetFridge(userId);
+    }
+
+    // —— internals —— //
+
+    // always reads the server; the result replaces both the memory and the on-disk copy,
+    // unless edits the flush could not send are still waiting (they are not in the snapshot)
+    private CompletableFuture<List<String>> load(int userId) {
+        int generation = generations.getOrDefault(userId, 0);
+        int editsAt    = replica.fridgeEdits(userId);
+        return FridgeWriteBehind.getInstance().flush(userId)
+                .thenCompose(v -> fetch(userId))
+                .thenApply(snapshot -> {
+                    synchronized (this) {
+                        if (FridgeWriteBehind.getInstance().hasPending(userId)) {
+                            Entry current = entries.get(userId);
+                            LocalReplica.Fridge local = current == null ? replica.getFridge(userId) : null;
+                            return new ArrayList<>(current != null ? current.items
+                                    : local != null ? local.items() : snapshot.items());
+                        }
+                        if (generations.getOrDefault(userId, 0) == generation) {
+                            entries.put(userId, new Entry(new ArrayList<>(snapshot.items()), snapshot.version(),
+                                    System.currentTimeMillis()));
+                            replica.replaceFridge(userId, snapshot.items(), snapshot.version(), editsAt);
+                        }
+                    }
+                    return new ArrayList<>(snapshot.items());
+                });
+    }
+
+    // version first: a write landing between the two queries then shows up as a
+    // version change on the next check instead of being missed
+    private CompletableFuture<Snapshot> fetch(int userId) {
+        return connector.callAsync(LOAD_TIMEOUT, () -> {
+            String version = connector.getFridgeVersion(userId);
+            return new Snapshot(connector.getFridgeItems(userId), version);
+        });
+    }
+
+    private void revalidate(int userId, Entry entry) {
+        if (FridgeWriteBehind.getInstance().hasPending(userId)) {
+            return;   // our own writes are in flight; check again after they land
+        }
+        entry.revalidating = true;
+        connector.getFridgeVersionAsync(userId).whenComplete((version, ex) -> {
+            synchronized (this) {
+                entry.revalidating = false;
+                if (ex != null || version == null || entries.get(userId) != entry) {
+                    return;
+                }
+                entry.checkedAt = System.currentTimeMillis();
+                if (entry.version == null) {
+                    entry.version = version;   // first check after our own writes: adopt it
+                } else if (!Objects.equals(entry.version, version)) {
+                    // changed elsewhere: reload in the background for the next read;
+                    // the on-disk copy is kept until the reload replaces it
+                    entries.remove(userId);
+                    generations.merge(userId, 1, Integer::sum);
+                    load(userId);
+                }
+            }
+        });
+    }
+}
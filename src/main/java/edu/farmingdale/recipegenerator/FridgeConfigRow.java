@@ -0,0 +1,27 @@
+package edu.farmingdale.recipegenerator;
+
+import java.sql.Timestamp;
+
+/**
+ * Summary row of a saved fridge snapshot in the {@code fridge_configs} table.
+ *
+ * @param id        the snapshot ID
+ * @param name      the snapshot name
+ * @param createdAt when the snapshot was saved
+ */
+public record FridgeConfigRow(int id, String name, Timestamp createdAt) {
+
+    /**
+     * SELECT list that {@link #MAPPER} expects, in column order.
+     */
+    public static final String COLUMNS = "id, name, created_at";
+
+    /**
+     * Maps a row selected with {@link #COLUMNS}.
+     */
+    public static final RowMapper<FridgeConfigRow> MAPPER = rs -> new FridgeConfigRow(
+            rs.getInt(1),
+            rs.getString(2),
+            rs.getTimestamp(3)
+    );
+}
@@ -1,5 +1,6 @@
 package edu.farmingdale.recipegenerator;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -19,6 +20,8 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 
 
 /**
@@ -39,7 +42,7 @@ public class FridgeController {
     @FXML
     private ListView<String> listView;
 
-    private AzureDBConnector connector;
+    private FridgeWriteBehind writeBehind;
     private SessionManager session;
 
     /**
@@ -51,7 +54,7 @@ public class FridgeController {
         dragAndDrop();
 
         session = SessionManager.getInstance();
-        connector = new AzureDBConnector();
+        writeBehind = FridgeWriteBehind.getInstance();
 
         UpdateFridge();
 
@@ -66,7 +69,7 @@ public class FridgeController {
 
     }
     /**
-     * Adds a new item to the fridge list and updates the database.
+     * Adds a new item to the fridge list and queues the database insert.
      */
     @FXML
     private void addButton(){
@@ -76,7 +79,7 @@ public class FridgeController {
             return;
         }
         int userId = session.getCurrentUser().getUserID(); //gets userID
-        connector.addFridgeItem(userId, item); // add item to the database
+        writeBehind.add(userId, item); // queue the insert; it is flushed in a batch shortly
 
         listView.getItems().add(item);
         textField.clear();
@@ -94,7 +97,7 @@ public class FridgeController {
         if (selectedItem != null) {
 
             int userId = session.getCurrentUser().getUserID(); //gets userID
-            connector.deleteFridgeItemByName(userId,selectedItem);  // Delete the item by name from the database
+            writeBehind.delete(userId, selectedItem);  // queue the delete by name
 
             // Remove item from ListView
             listView.getItems().remove(listView.getSelectionModel().getSelectedIndex());
@@ -115,9 +118,9 @@ public class FridgeController {
             // Get the old item (name)
             String oldItem = listView.getSelectionModel().getSelectedItem();
 
-            // Update item in the database
+            // Queue the rename for the database
             int userId = session.getCurrentUser().getUserID(); // gets user ID
-            connector.updateFridgeItemByName(userId, oldItem, newItem); // now includes userId
+            writeBehind.rename(userId, oldItem, newItem);
 
             // Update item in ListView
             listView.getItems().set(selectedIndex, newItem);
@@ -155,15 +158,33 @@ public class FridgeController {
     }
 
     /**
-     * Refreshes the fridge list with items from the database for the current user.
+     * Refreshes the fridge list with the current user's items.
+     * Items come from {@link FridgeCache}, so reopening the fridge costs no query;
+     * only the first load runs in the background before filling the list on the FX thread.
      */
     public void UpdateFridge(){
         int userId = session.getCurrentUser().getUserID();
-        List<String> updatedList = connector.getFridgeItems(userId);
-        listView.getItems().setAll(updatedList);
+        CompletableFuture<List<String>> items = FridgeCache.getInstance().getItems(userId);
+        if (items.isDone() && !items.isCompletedExceptionally()) {
+            listView.getItems().setAll(items.join());
+            return;
+        }
+        items.thenAcceptAsync(updatedList -> listView.getItems().setAll(updatedList), Platform::runLater)
+                .exceptionally(this::logFailure);
 
     }
 
+    /**
+     * Logs a failed background database call (timeout, cancellation or driver error).
+     *
+     * @param error the failure
+     * @return always null, so it can be used with {@code exceptionally}
+     */
+    private Void logFailure(Throwable error) {
+        System.out.println("Fridge database call failed: " + error);
+        return null;
+    }
+
     /**
      * Enables drag-and-drop functionality for the fridge item list.
      */
@@ -0,0 +1,62 @@
+package edu.farmingdale.recipegenerator;
+
+/**
+ * A single pending change to a user's fridge items, as queued by {@link FridgeWriteBehind}
+ * and applied in bulk by {@link AzureDBConnector#applyFridgeMutations(int, java.util.List)}.
+ *
+ * @param type    what kind of change this is
+ * @param name    the item name (for RENAME, the current name)
+ * @param newName the new item name for RENAME, otherwise null
+ */
+public record FridgeMutation(Type type, String name, String newName) {
+
+    /**
+     * The kinds of fridge change, mirroring addFridgeItem, deleteFridgeItemByName
+     * and updateFridgeItemByName.
+     */
+    public enum Type { ADD, DELETE, RENAME }
+
+    /**
+     * @param name item to add
+     * @return an ADD mutation
+     */
+    public static FridgeMutation add(String name) {
+        return new FridgeMutation(Type.ADD, name, null);
+    }
+
+    /**
+     * @param name item to delete
+     * @return a DELETE mutation
+     */
+    public static FridgeMutation delete(String name) {
+        return new FridgeMutation(Type.DELETE, name, null);
+    }
+
+    /**
+     * @param oldName current item name
+     * @param newName new item name
+     * @return a RENAME mutation
+     */
+    public static FridgeMutation rename(String oldName, String newName) {
+        return new FridgeMutation(Type.RENAME, oldName, newName);
+    }
+
+    /**
+     * @return the item name that exists after this mutation is applied, or null for DELETE
+     */
+    public String resultName() {
+        return switch (type) {
+            case ADD    -> name;
+            case RENAME -> newName;
+            case DELETE -> null;
+        };
+    }
+
+    /**
+     * @param item an item name
+     * @return true if this mutation reads or writes {@code item}
+     */
+    public boolean touches(String item) {
+        return item.equals(name) || item.equals(newName);
+    }
+}
@@ -0,0 +1,328 @@
+package edu.farmingdale.recipegenerator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue for fridge item changes.
+ *
+ * The fridge window updates its ListView immediately and hands each change to this
+ * queue instead of writing it straight to the database. Changes are coalesced while
+ * they wait (adding then deleting an item cancels out, renaming an item several times
+ * becomes one rename) and are flushed as one JDBC batch in a single transaction,
+ * either a short delay after the first queued change or when the fridge window closes.
+ *
+ * Every change is also kept in the {@link LocalReplica} outbox until the server
+ * acknowledges it. While the replica is open a flush sends the whole outbox (which
+ * includes this queue), so changes made before a restart or during an outage go out
+ * with the next flush; the in-memory queue is only sent by itself when the replica is
+ * unavailable.
+ *
+ * Flushes for the same user run one after another, so changes reach the database in
+ * the order they were made. A flush that fails because the server cannot be reached
+ * keeps its changes and tries again later, for as long as that takes. A flush the
+ * server rejects is retried a few times before the changes are dropped and the fridge is
+ * reloaded from the server.
+ *
+ * Every queued change is also applied to {@link FridgeCache}, which therefore stays
+ * current without re-reading the fridge. Calls into the cache are made outside this
+ * object's lock because the cache calls back into {@link #flush(int)} while holding its own.
+ */
+public class FridgeWriteBehind {
+    // --- single shared instance ---
+    private static final FridgeWriteBehind INSTANCE = new FridgeWriteBehind();
+
+    // how long changes may wait before they are flushed
+    private static final long FLUSH_DELAY_MS = Long.getLong("flavorbot.fridge.flushDelayMs", 750L);
+
+    // consecutive rejected flushes before the queued changes are given up on
+    private static final int MAX_ATTEMPTS = 3;
+
+    // how long to wait before trying an unreachable server again
+    private static final long UNREACHABLE_RETRY_MS = Long.getLong("flavorbot.fridge.unreachableRetryMs", 30_000L);
+
+    // one flush: the changes sent and, if they came from the outbox, the position to acknowledge
+    private record Batch(List<FridgeMutation> mutations, long upTo) {
+        boolean outboxed() {
+            return upTo >= 0;
+        }
+    }
+
+    private final AzureDBConnector connector = AzureDBConnector.getInstance();
+    private final FridgeCache cache = FridgeCache.getInstance();
+    private final LocalReplica replica = LocalReplica.getInstance();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "fridge-write-behind");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // all guarded by "this"
+    private final Map<Integer, List<FridgeMutation>>   pending   = new HashMap<>();
+    private final Map<Integer, Boolean>                scheduled = new HashMap<>();
+    private final Map<Integer, Integer>                failures  = new HashMap<>();
+    private final Map<Integer, CompletableFuture<Void>> tail     = new HashMap<>();
+
+    // private ctor → use getInstance()
+    private FridgeWriteBehind() { }
+
+    /**
+     * @return the one-and-only FridgeWriteBehind
+     */
+    public static FridgeWriteBehind getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues adding an item to a user's fridge.
+     *
+     * @param userId ID of the user
+     * @param name   item name
+     */
+    public void add(int userId, String name) {
+        enqueue(userId, FridgeMutation.add(name));
+    }
+
+    /**
+     * Queues deleting an item from a user's fridge.
+     *
+     * @param userId ID of the user
+     * @param name   item name
+     */
+    public void delete(int userId, String name) {
+        enqueue(userId, FridgeMutation.delete(name));
+    }
+
+    /**
+     * Queues renaming an item in a user's fridge.
+     *
+     * @param userId  ID of the user
+     * @param oldName current item name
+     * @param newName new item name
+     */
+    public void rename(int userId, String oldName, String newName) {
+        enqueue(userId, FridgeMutation.rename(oldName, newName));
+    }
+
+    /**
+     * Queues a change, merging it with earlier queued changes where possible, and
+     * makes sure a flush is scheduled.
+     *
+     * @param userId   ID of the user
+     * @param mutation the change
+     */
+    public void enqueue(int userId, FridgeMutation mutation) {
+        cache.applyLocal(userId, mutation);
+        synchronized (this) {
+            coalesce(pending.computeIfAbsent(userId, id -> new ArrayList<>()), mutation);
+            if (!scheduled.getOrDefault(userId, false)) {
+                scheduled.put(userId, true);
+                timer.schedule(() -> flush(userId), FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * @param userId ID of the user
+     * @return true if the user has changes that have not been written yet, queued here
+     *         or left in the replica's outbox (for example by an earlier run)
+     */
+    public boolean hasPending(int userId) {
+        synchronized (this) {
+            List<FridgeMutation> queued = pending.get(userId);
+            if (queued != null && !queued.isEmpty()) {
+                return true;
+            }
+        }
+        return replica.hasPendingFridgeMutations(userId);
+    }
+
+    /**
+     * Writes a user's queued changes now.
+     *
+     * @param userId ID of the user
+     * @return a future that completes once everything queued so far has been written
+     *         (or given up on)
+     */
+    public synchronized CompletableFuture<Void> flush(int userId) {
+        scheduled.put(userId, false);
+        List<FridgeMutation> batch = pending.remove(userId);
+        CompletableFuture<Void> previous = tail.getOrDefault(userId, CompletableFuture.completedFuture(null));
+        if ((batch == null || batch.isEmpty()) && !replica.hasPendingFridgeMutations(userId)) {
+            return previous;
+        }
+
+        // chain after the previous flush so batches for one user never overlap
+        CompletableFuture<Void> next = previous.thenCompose(v -> send(userId, batch));
+        tail.put(userId, next);
+        return next;
+    }
+
+    /**
+     * Writes every user's queued changes now. Called when the fridge window closes
+     * and when the application exits.
+     *
+     * @return a future that completes once all flushes have finished
+     */
+    public synchronized CompletableFuture<Void> flushAll() {
+        List<Integer> users = new ArrayList<>(pending.keySet());
+        users.addAll(tail.keySet());
+        users.addAll(replica.usersWithPendingFridgeMutations());
+        return CompletableFuture.allOf(users.stream()
+                .distinct()
+                .map(this::flush)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    // —— internals —— //
+
+    // sends the outbox if the replica has one (it already holds "batch"), otherwise "batch";
+    // runs on the flush chain, so the outbox is read only after the previous flush acknowledged its part
+    private CompletableFuture<Void> send(int userId, List<FridgeMutation> batch) {
+        LocalReplica.PendingFridge outbox = replica.pendingFridgeMutations(userId);
+        Batch sending;
+        if (outbox != null) {
+            List<FridgeMutation> coalesced = new ArrayList<>();
+            for (FridgeMutation m : outbox.mutations()) {
+                coalesce(coalesced, m);
+            }
+            sending = new Batch(coalesced, outbox.upTo());
+        } else if (batch != null && !batch.isEmpty()) {
+            sending = new Batch(batch, -1);
+        } else {
+            return CompletableFuture.completedFuture(null);
+        }
+        return connector.applyFridgeMutationsAsync(userId, sending.mutations())
+                .handle((v, ex) -> {
+                    onFlushed(userId, sending, ex);
+                    return null;
+                });
+    }
+
+    private void onFlushed(int userId, Batch batch, Throwable error) {
+        if (error == null) {
+            synchronized (this) {
+                failures.remove(userId);
+            }
+            if (batch.outboxed()) {
+                replica.ackFridgeMutations(userId, batch.upTo());
+            }
+            cache.markWritten(userId);
+            return;
+        }
+        if (AzureDBConnector.isUnreachable(error)) {
+            // nothing is wrong with the changes; keep them and the local copy until the server answers
+            System.out.println("Keeping " + batch.mutations().size() + " fridge change(s) for user "
+                    + userId + " until the database is reachable: " + error);
+            retry(userId, batch, UNREACHABLE_RETRY_MS);
+            return;
+        }
+        if (!requeue(userId, batch)) {
+            // the cached list still shows the dropped changes; reload it next time
+            if (batch.outboxed()) {
+                replica.ackFridgeMutations(userId, batch.upTo());
+            }
+            cache.invalidate(userId);
+        }
+    }
+
+    // retries a rejected batch; false if it has been rejected too often and was dropped
+    private synchronized boolean requeue(int userId, Batch batch) {
+        int attempts = failures.merge(userId, 1, Integer::sum);
+        if (attempts >= MAX_ATTEMPTS) {
+            failures.remove(userId);
+            System.out.println("Dropping " + batch.mutations().size() + " fridge change(s) for user "
+                    + userId + " after " + attempts + " failed attempts");
+            return false;
+        }
+        retry(userId, batch, FLUSH_DELAY_MS << attempts);
+        return true;
+    }
+
+    // schedules another flush; a batch that is not in the outbox goes back in front of
+    // anything queued meanwhile
+    private synchronized void retry(int userId, Batch batch, long delayMs) {
+        if (!batch.outboxed()) {
+            List<FridgeMutation> retry = new ArrayList<>();
+            for (FridgeMutation m : batch.mutations()) {
+                coalesce(retry, m);
+            }
+            for (FridgeMutation m : pending.getOrDefault(userId, List.of())) {
+                coalesce(retry, m);
+            }
+            pending.put(userId, retry);
+        }
+        if (!scheduled.getOrDefault(userId, false)) {
+            scheduled.put(userId, true);
+            timer.schedule(() -> flush(userId), delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Appends {@code m} to {@code queue}, merging it with the most recent queued change
+     * to the same item:
+     * - ADD x, DELETE x            → nothing
+     * - RENAME a→x, DELETE x       → DELETE a
+     * - ADD a, RENAME a→b          → ADD b
+     * - RENAME a→b, RENAME b→c     → RENAME a→c (nothing if c is a)
+     */
+    private static void coalesce(List<FridgeMutation> queue, FridgeMutation m) {
+        int last = lastTouching(queue, m.name());
+        FridgeMutation prev = last >= 0 ? queue.get(last) : null;
+        if (prev == null || !m.name().equals(prev.resultName())) {
+            queue.add(m);
+            return;
+        }
+
+        // merging moves the effect back to position "last"; only safe if nothing
+        // queued after it involves the other name taking part in the merge
+        String other = m.type() == FridgeMutation.Type.RENAME ? m.newName() : prev.name();
+        if (touchedAfter(queue, last, other)) {
+            queue.add(m);
+            return;
+        }
+
+        switch (m.type()) {
+            case DELETE -> {
+                queue.remove(last);
+                if (prev.type() == FridgeMutation.Type.RENAME) {
+                    coalesce(queue, FridgeMutation.delete(prev.name()));
+                }
+            }
+            case RENAME -> {
+                if (prev.type() == FridgeMutation.Type.ADD) {
+                    queue.set(last, FridgeMutation.add(m.newName()));
+                } else if (prev.name().equals(m.newName())) {
+                    queue.remove(last);
+                } else {
+                    queue.set(last, FridgeMutation.rename(prev.name(), m.newName()));
+                }
+            }
+            case ADD -> queue.add(m);
+        }
+    }
+
+    private static boolean touchedAfter(List<FridgeMutation> queue, int index, String item) {
+        for (int i = index + 1; i < queue.size(); i++) {
+            if (queue.get(i).touches(item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int lastTouching(List<FridgeMutation> queue, String item) {
+        for (int i = queue.size() - 1; i >= 0; i--) {
+            if (queue.get(i).touches(item)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -12,6 +12,7 @@ import javafx.scene.control.Alert.AlertType;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -58,6 +59,29 @@ public class HelloApplication extends Application {
         stage.show();
     }
 
+    /**
+     * Called when the application exits. Writes queued fridge changes, releases
+     * the pooled database connections and closes the local replica.
+     */
+    @Override
+    public void stop() {
+        flushPendingWrites();
+        AzureDBConnector.getInstance().close();
+        LocalReplica.getInstance().close();
+    }
+
+    /**
+     * Writes any queued fridge changes, waiting a few seconds at most.
+     * Used on every exit path, including {@code System.exit}.
+     */
+    public static void flushPendingWrites() {
+        try {
+            FridgeWriteBehind.getInstance().flushAll().get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.out.println("Could not write pending fridge changes: " + e);
+        }
+    }
+
     /**
      * Utility method to display an alert dialog.
      *
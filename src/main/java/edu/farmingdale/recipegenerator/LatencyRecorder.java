@@ -0,0 +1,78 @@
+package edu.farmingdale.recipegenerator;
+
+import java.util.Arrays;
+
+/**
+ * Keeps latency samples for one kind of measurement (for example "time to first byte")
+ * and summarizes them.
+ *
+ * Counts, totals and the maximum cover every sample ever recorded; percentiles are
+ * computed over the most recent {@code window} samples so they follow current
+ * conditions instead of the whole session.
+ */
+public class LatencyRecorder {
+
+    /**
+     * Summary of the recorded samples, in milliseconds.
+     *
+     * @param count number of samples recorded
+     * @param avg   mean over all samples
+     * @param p50   median of the recent samples
+     * @param p95   95th percentile of the recent samples
+     * @param max   largest sample recorded
+     */
+    public record Snapshot(long count, double avg, long p50, long p95, long max) {
+        @Override
+        public String toString() {
+            return String.format("n=%d avg=%.0fms p50=%dms p95=%dms max=%dms", count, avg, p50, p95, max);
+        }
+    }
+
+    private final long[] recent;
+
+    // all guarded by "this"
+    private int next;
+    private long count;
+    private long total;
+    private long max;
+
+    /**
+     * @param window number of recent samples kept for percentiles
+     */
+    public LatencyRecorder(int window) {
+        this.recent = new long[window];
+    }
+
+    /**
+     * Records one sample.
+     *
+     * @param millis the measured latency in milliseconds
+     */
+    public synchronized void record(long millis) {
+        recent[next] = millis;
+        next = (next + 1) % recent.length;
+        count++;
+        total += millis;
+        max = Math.max(max, millis);
+    }
+
+    /**
+     * @return a summary of the samples recorded so far
+     */
+    public synchronized Snapshot snapshot() {
+        int size = (int) Math.min(count, recent.length);
+        if (size == 0) {
+            return new Snapshot(0, 0, 0, 0, 0);
+        }
+        long[] sorted = Arrays.copyOf(recent, size);
+        Arrays.sort(sorted);
+        return new Snapshot(count, (double) total / count,
+                percentile(sorted, 50), percentile(sorted, 95), max);
+    }
+
+    // nearest-rank percentile of an already sorted array
+    private static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,821 @@
+package edu.farmingdale.recipegenerator;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Embedded on-disk copy of the signed-in user's data, kept in an H2 database under
+ * {@code ~/.flavorbot}.
+ *
+ * It mirrors the user's row (without the password hash) and preferences and their
+ * fridge items, so loading preferences and opening the fridge are served locally and
+ * keep working when the Azure database is slow or unreachable.
+ *
+ * Logging in is always checked against the server. Only when the server cannot be
+ * reached is a user who has logged in online on this machine before let in, checked
+ * against a salted PBKDF2 verifier of their password hash ({@link #offlineLogin}); the
+ * verifier is dropped as soon as the server reports a different password or no user.
+ *
+ * Fridge edits are also appended to an outbox table until the server acknowledges them
+ * ({@link #pendingFridgeMutations(int)}), so edits made while offline survive a restart.
+ *
+ * A background task ({@link #startSync(int, String)}) keeps the copy current: it pushes
+ * preferences and fridge edits that were saved while offline, then pulls the user row
+ * and, if the fridge version fingerprint moved and no edits are still waiting, the
+ * fridge items.
+ *
+ * If the file cannot be opened (for example a second copy of the app holds it), the
+ * replica stays disabled and every lookup simply reports a miss.
+ */
+public class LocalReplica implements AutoCloseable {
+    // --- single shared instance ---
+    private static final LocalReplica INSTANCE = new LocalReplica();
+
+    private static final Path DIRECTORY = Path.of(System.getProperty("user.home"), ".flavorbot");
+
+    // how often the signed-in user's data is re-synced with the server
+    private static final long SYNC_INTERVAL_MS = Long.getLong("flavorbot.replica.syncMs", 60_000L);
+
+    // how long one sync round waits for offline fridge edits to reach the server
+    private static final long FLUSH_WAIT_MS = Long.getLong("flavorbot.replica.flushWaitMs", 30_000L);
+
+    // the local table has no password hash; mapped as null by UserRow.MAPPER
+    private static final String LOCAL_COLUMNS = "userID, username, email, NULL, preferences";
+
+    // offline login verifier: PBKDF2 over the password hash, never the hash itself
+    private static final String VERIFIER_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int VERIFIER_ITERATIONS = 100_000;
+    private static final int VERIFIER_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Locally stored fridge items plus the server version they were copied at.
+     *
+     * @param items   item names in the order they were added
+     * @param version server fingerprint, or null if local edits were made since
+     */
+    public record Fridge(List<String> items, String version) { }
+
+    /**
+     * Fridge edits in the outbox, oldest first.
+     *
+     * @param mutations the edits as they were made
+     * @param upTo      outbox position of the last one; pass it to {@link #ackFridgeMutations(int, long)}
+     */
+    public record PendingFridge(List<FridgeMutation> mutations, long upTo) { }
+
+    private final ScheduledExecutorService syncTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "local-replica-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // all guarded by "this"
+    private Connection connection;
+    private boolean disabled;
+    private ScheduledFuture<?> syncTask;
+    // bumped on every local fridge edit, so a sync that raced with an edit is not stored
+    private final Map<Integer, Integer> fridgeEdits = new HashMap<>();
+
+    // private ctor → use getInstance()
+    private LocalReplica() { }
+
+    /**
+     * @return the one-and-only LocalReplica
+     */
+    public static LocalReplica getInstance() {
+        return INSTANCE;
+    }
+
+    // —— Users —— //
+
+    /**
+     * Looks up a user in the local copy.
+     *
+     * @param username the username
+     * @return the stored row, or null if the user has never signed in on this machine
+     */
+    public synchronized UserRow findUser(String username) {
+        Connection conn = connection();
+        if (conn == null) {
+            return null;
+        }
+        String sql = "SELECT " + LOCAL_COLUMNS + " FROM users WHERE username = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return UserRow.MAPPER.map(rs);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Checks a login against the verifier stored by {@link #rememberLogin(String, String)}.
+     * Only for when the server cannot be reached.
+     *
+     * @param username       the username
+     * @param hashedPassword the hashed password entered
+     * @return the stored row if this machine has verified that login online, otherwise null
+     */
+    public synchronized UserRow offlineLogin(String username, String hashedPassword) {
+        Connection conn = connection();
+        if (conn == null) {
+            return null;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT offline_login FROM users WHERE username = ?")) {
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || !verifies(rs.getString(1), hashedPassword)) {
+                    return null;
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return findUser(username);
+    }
+
+    /**
+     * Stores a verifier for a login the server has just accepted, so the user can log
+     * in on this machine while the server is unreachable.
+     *
+     * @param username       the username
+     * @param hashedPassword the hashed password the server accepted
+     */
+    public synchronized void rememberLogin(String username, String hashedPassword) {
+        Connection conn = connection();
+        if (conn == null) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE users SET offline_login = ? WHERE username = ?")) {
+            ps.setString(1, verifier(hashedPassword));
+            ps.setString(2, username);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Drops a user the server no longer has, with their fridge and unsent fridge edits.
+     *
+     * @param username the username
+     */
+    public synchronized void forgetUser(String username) {
+        Connection conn = connection();
+        UserRow row = findUser(username);
+        if (conn == null || row == null) {
+            return;
+        }
+        inTransaction(conn, () -> {
+            deleteFridge(conn, row.userId());
+            ackFridgeMutations(conn, row.userId(), Long.MAX_VALUE);
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM users WHERE userID = ?")) {
+                ps.setInt(1, row.userId());
+                ps.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Stores a user row fetched from the server. Preferences saved locally that have
+     * not reached the server yet are kept. The password hash is not stored; an offline
+     * login verifier that no longer matches it is dropped.
+     *
+     * @param row the server's copy of the user
+     */
+    public synchronized void saveUser(UserRow row) {
+        Connection conn = connection();
+        if (conn == null) {
+            return;
+        }
+        String update = ""
+                + "UPDATE users "
+                + "   SET username = ?, email = ?, "
+                + "       preferences = CASE WHEN prefs_dirty THEN preferences ELSE ? END "
+                + " WHERE userID = ?";
+        try (PreparedStatement ps = conn.prepareStatement(update)) {
+            ps.setString(1, row.username());
+            ps.setString(2, row.email());
+            ps.setString(3, row.preferences());
+            ps.setInt(4, row.userId());
+            if (ps.executeUpdate() > 0) {
+                dropStaleLogin(conn, row);
+                return;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        // first sign-in on this machine; drop any stale row that used the same name
+        try (PreparedStatement del = conn.prepareStatement("DELETE FROM users WHERE username = ?");
+             PreparedStatement ins = conn.prepareStatement(
+                     "INSERT INTO users (userID, username, email, preferences) VALUES (?, ?, ?, ?)")) {
+            del.setString(1, row.username());
+            del.executeUpdate();
+            ins.setInt(1, row.userId());
+            ins.setString(2, row.username());
+            ins.setString(3, row.email());
+            ins.setString(4, row.preferences());
+            ins.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // —— Preferences —— //
+
+    /**
+     * @param userId ID of the user
+     * @return the locally stored preferences JSON, or null if the user is not stored
+     */
+    public synchronized String getPreferences(int userId) {
+        Connection conn = connection();
+        if (conn == null) {
+            return null;
+        }
+        try (PreparedStatement ps = conn.prepareStatement("SELECT preferences FROM users WHERE userID = ?")) {
+            ps.setInt(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString(1);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Stores preferences locally and marks them as not yet on the server.
+     *
+     * @param userId    ID of the user
+     * @param prefsJson JSON string of preferences
+     */
+    public synchronized void savePreferences(int userId, String prefsJson) {
+        Connection conn = connection();
+        if (conn == null) {
+            return;
+        }
+        String sql = "UPDATE users SET preferences = ?, prefs_dirty = TRUE WHERE userID = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, prefsJson);
+            ps.setInt(2, userId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Clears the "not yet on the server" flag, unless the preferences were changed
+     * again after {@code prefsJson} was sent.
+     *
+     * @param userId    ID of the user
+     * @param prefsJson the JSON that reached the server
+     */
+    public synchronized void markPreferencesSynced(int userId, String prefsJson) {
+        Connection conn = connection();
+        if (conn == null) {
+            return;
+        }
+        String sql = "UPDATE users SET prefs_dirty = FALSE WHERE userID = ? AND preferences = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ps.setString(2, prefsJson);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return preferences saved locally that have not reached the server, by user ID
+     */
+    public synchronized Map<Integer, String> dirtyPreferences() {
+        Map<Integer, String> dirty = new LinkedHashMap<>();
+        Connection conn = connection();
+        if (conn == null) {
+            return dirty;
+        }
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT userID, preferences FROM users WHERE prefs_dirty")) {
+            while (rs.next()) {
+                dirty.put(rs.getInt(1), rs.getString(2));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return dirty;
+    }
+
+    // —— Fridge items —— //
+
+    /**
+     * @param userId ID of the user
+     * @return the locally stored fridge, or null if it has never been copied
+     */
+    public synchronized Fridge getFridge(int userId) {
+        Connection conn = connection();
+        if (conn == null) {
+            return null;
+        }
+        try (PreparedStatement state = conn.prepareStatement("SELECT version FROM fridge_state WHERE user_id = ?");
+             PreparedStatement items = conn.prepareStatement(
+                     "SELECT name FROM fridge_items WHERE user_id = ? ORDER BY id")) {
+            state.setInt(1, userId);
+            String version;
+            try (ResultSet rs = state.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                version = rs.getString(1);
+            }
+            items.setInt(1, userId);
+            List<String> names = new ArrayList<>();
+            try (ResultSet rs = items.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString(1));
+                }
+            }
+            return new Fridge(names, version);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * @param userId ID of the user
+     * @return a counter that changes whenever the user's fridge is edited locally;
+     *         pass it to {@link #replaceFridge(int, List, String, int)}
+     */
+    public synchronized int fridgeEdits(int userId) {
+        return fridgeEdits.getOrDefault(userId, 0);
+    }
+
+    /**
+     * Replaces the stored fridge with a copy read from the server.
+     *
+     * @param userId   ID of the user
+     * @param items    item names from the server
+     * @param version  the server's version fingerprint for {@code items}
+     * @param editsAt  {@link #fridgeEdits(int)} from before the server was read; the copy
+     *                 is skipped if the fridge was edited locally since, or if the outbox
+     *                 still holds edits the server has not acknowledged
+     */
+    public synchronized void replaceFridge(int userId, List<String> items, String version, int editsAt) {
+        Connection conn = connection();
+        if (conn == null || fridgeEdits(userId) != editsAt || hasPendingFridgeMutations(userId)) {
+            return;
+        }
+        inTransaction(conn, () -> {
+            deleteFridge(conn, userId);
+            try (PreparedStatement ins = conn.prepareStatement(
+                         "INSERT INTO fridge_items (user_id, name) VALUES (?, ?)");
+                 PreparedStatement state = conn.prepareStatement(
+                         "INSERT INTO fridge_state (user_id, version) VALUES (?, ?)")) {
+                for (String name : items) {
+                    ins.setInt(1, userId);
+                    ins.setString(2, name);
+                    ins.addBatch();
+                }
+                ins.executeBatch();
+                state.setInt(1, userId);
+                state.setString(2, version);
+                state.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Applies a local edit to the stored fridge, if it is stored, and appends it to the
+     * outbox. Uses the same semantics as the server: deletes and renames affect every
+     * item with that name.
+     *
+     * @param userId   ID of the user
+     * @param mutation the edit
+     */
+    public synchronized void applyFridgeMutation(int userId, FridgeMutation mutation) {
+        fridgeEdits.merge(userId, 1, Integer::sum);
+        Connection conn = connection();
+        if (conn == null) {
+            return;
+        }
+        String sql = switch (mutation.type()) {
+            case ADD    -> "INSERT INTO fridge_items (user_id, name) "
+                         + "SELECT user_id, CAST(? AS VARCHAR(255)) FROM fridge_state WHERE user_id = ?";
+            case DELETE -> "DELETE FROM fridge_items WHERE name = ? AND user_id = ?";
+            case RENAME -> "UPDATE fridge_items SET name = ? WHERE user_id = ? AND name = ?";
+        };
+        inTransaction(conn, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql);
+                 PreparedStatement state = conn.prepareStatement(
+                         "UPDATE fridge_state SET version = NULL WHERE user_id = ?");
+                 PreparedStatement outbox = conn.prepareStatement(
+                         "INSERT INTO fridge_outbox (user_id, type, name, new_name) VALUES (?, ?, ?, ?)")) {
+                ps.setString(1, mutation.type() == FridgeMutation.Type.RENAME ? mutation.newName() : mutation.name());
+                ps.setInt(2, userId);
+                if (mutation.type() == FridgeMutation.Type.RENAME) {
+                    ps.setString(3, mutation.name());
+                }
+                ps.executeUpdate();
+                state.setInt(1, userId);
+                state.executeUpdate();
+                outbox.setInt(1, userId);
+                outbox.setString(2, mutation.type().name());
+                outbox.setString(3, mutation.name());
+                outbox.setString(4, mutation.newName());
+                outbox.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Drops the stored fridge so the next read goes to the server.
+     *
+     * @param userId ID of the user
+     */
+    public synchronized void forgetFridge(int userId) {
+        fridgeEdits.merge(userId, 1, Integer::sum);
+        Connection conn = connection();
+        if (conn == null) {
+            return;
+        }
+        inTransaction(conn, () -> deleteFridge(conn, userId));
+    }
+
+    /**
+     * @param userId ID of the user
+     * @return the user's fridge edits the server has not acknowledged yet, or null if there
+     *         are none (or the replica is disabled)
+     */
+    public synchronized PendingFridge pendingFridgeMutations(int userId) {
+        Connection conn = connection();
+        if (conn == null) {
+            return null;
+        }
+        String sql = "SELECT seq, type, name, new_name FROM fridge_outbox WHERE user_id = ? ORDER BY seq";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            List<FridgeMutation> mutations = new ArrayList<>();
+            long upTo = -1;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    upTo = rs.getLong(1);
+                    mutations.add(new FridgeMutation(
+                            FridgeMutation.Type.valueOf(rs.getString(2)), rs.getString(3), rs.getString(4)));
+                }
+            }
+            return mutations.isEmpty() ? null : new PendingFridge(mutations, upTo);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * @param userId ID of the user
+     * @return true if the outbox holds fridge edits the server has not acknowledged yet
+     */
+    public synchronized boolean hasPendingFridgeMutations(int userId) {
+        Connection conn = connection();
+        if (conn == null) {
+            return false;
+        }
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM fridge_outbox WHERE user_id = ? LIMIT 1")) {
+            ps.setInt(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * @return IDs of the users with fridge edits in the outbox
+     */
+    public synchronized List<Integer> usersWithPendingFridgeMutations() {
+        List<Integer> users = new ArrayList<>();
+        Connection conn = connection();
+        if (conn == null) {
+            return users;
+        }
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT DISTINCT user_id FROM fridge_outbox")) {
+            while (rs.next()) {
+                users.add(rs.getInt(1));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return users;
+    }
+
+    /**
+     * Removes fridge edits from the outbox once the server has committed them (or
+     * rejected them for good). Edits appended after {@code upTo} stay queued.
+     *
+     * @param userId ID of the user
+     * @param upTo   {@link PendingFridge#upTo()} of the edits that were sent
+     */
+    public synchronized void ackFridgeMutations(int userId, long upTo) {
+        Connection conn = connection();
+        if (conn == null) {
+            return;
+        }
+        try {
+            ackFridgeMutations(conn, userId, upTo);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // —— Background sync —— //
+
+    /**
+     * Starts (or restarts) periodic syncing of one user's data, beginning right away.
+     *
+     * @param userId   ID of the signed-in user
+     * @param username their username
+     */
+    public synchronized void startSync(int userId, String username) {
+        if (syncTask != null) {
+            syncTask.cancel(false);
+        }
+        syncTask = syncTimer.scheduleWithFixedDelay(
+                () -> sync(userId, username), 0, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops syncing and closes the local database.
+     */
+    @Override
+    public synchronized void close() {
+        syncTimer.shutdownNow();
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            connection = null;
+        }
+        disabled = true;
+    }
+
+    // —— internals —— //
+
+    // one sync round; any server error ends the round and the next one tries again
+    private void sync(int userId, String username) {
+        AzureDBConnector connector = AzureDBConnector.getInstance();
+        try {
+            // 1) push preferences saved while the server was unreachable
+            for (Map.Entry<Integer, String> dirty : dirtyPreferences().entrySet()) {
+                connector.pushUserPreferences(dirty.getKey(), dirty.getValue());
+                markPreferencesSynced(dirty.getKey(), dirty.getValue());
+            }
+
+            // 2) pull the user row; refresh the session if it belongs to the signed-in user
+            UserRow remote = connector.queryUserByUsername(username);
+            if (remote == null) {
+                forgetUser(username);   // deleted on the server; no more offline logins
+                return;
+            }
+            saveUser(remote);
+            User current = SessionManager.getInstance().getCurrentUser();
+            UserRow merged = findUser(username);
+            if (current != null && merged != null && current.getUserID() == merged.userId()) {
+                SessionManager.getInstance().setCurrentUser(new UserRow(remote.userId(), remote.username(),
+                        remote.email(), remote.hashedPassword(), merged.preferences()).toUser());
+            }
+
+            // 3) send fridge edits made while the server was unreachable; the fridge is only
+            //    pulled once the server has acknowledged all of them
+            if (!flushFridgeEdits() || FridgeWriteBehind.getInstance().hasPending(userId)) {
+                return;
+            }
+            Fridge local = getFridge(userId);
+            int editsAt = fridgeEdits(userId);
+            String version = connector.getFridgeVersion(userId);
+            if (version == null || (local != null && version.equals(local.version()))) {
+                return;
+            }
+            List<String> items = connector.getFridgeItems(userId);
+            // only keep the copy if nothing moved while it was read
+            if (version.equals(connector.getFridgeVersion(userId))) {
+                replaceFridge(userId, items, version, editsAt);
+            }
+        } catch (SQLException e) {
+            System.out.println("Local replica sync skipped: " + e.getMessage());
+        }
+    }
+
+    // sends every user's queued and outboxed fridge edits; false if that did not finish in time
+    private static boolean flushFridgeEdits() {
+        try {
+            FridgeWriteBehind.getInstance().flushAll().get(FLUSH_WAIT_MS, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // opens the database on first use; null once opening has failed
+    private Connection connection() {
+        if (connection != null || disabled) {
+            return connection;
+        }
+        try {
+            Files.createDirectories(DIRECTORY);
+            ownerOnly(DIRECTORY);
+            Connection conn = DriverManager.getConnection(
+                    "jdbc:h2:file:" + DIRECTORY.resolve("replica").toAbsolutePath(), "flavorbot", "");
+            try (Statement st = conn.createStatement()) {
+                st.execute(""
+                        + "CREATE TABLE IF NOT EXISTS users ("
+                        + "  userID          INT          PRIMARY KEY,"
+                        + "  username        VARCHAR(255) NOT NULL UNIQUE,"
+                        + "  email           VARCHAR(255),"
+                        + "  offline_login   VARCHAR(255),"
+                        + "  preferences     CLOB,"
+                        + "  prefs_dirty     BOOLEAN      NOT NULL DEFAULT FALSE"
+                        + ")");
+                // replicas written before offline logins had a verifier kept the plain hash
+                st.execute("ALTER TABLE users DROP COLUMN IF EXISTS hashed_password");
+                st.execute("ALTER TABLE users ADD COLUMN IF NOT EXISTS offline_login VARCHAR(255)");
+                st.execute(""
+                        + "CREATE TABLE IF NOT EXISTS fridge_state ("
+                        + "  user_id INT          PRIMARY KEY,"
+                        + "  version VARCHAR(100)"
+                        + ")");
+                st.execute(""
+                        + "CREATE TABLE IF NOT EXISTS fridge_items ("
+                        + "  id      INT          AUTO_INCREMENT PRIMARY KEY,"
+                        + "  user_id INT          NOT NULL,"
+                        + "  name    VARCHAR(255) NOT NULL"
+                        + ")");
+                st.execute("CREATE INDEX IF NOT EXISTS idx_fridge_items_user ON fridge_items (user_id, name)");
+                // fridge edits not yet acknowledged by the server, in the order they were made
+                st.execute(""
+                        + "CREATE TABLE IF NOT EXISTS fridge_outbox ("
+                        + "  seq      BIGINT       AUTO_INCREMENT PRIMARY KEY,"
+                        + "  user_id  INT          NOT NULL,"
+                        + "  type     VARCHAR(10)  NOT NULL,"
+                        + "  name     VARCHAR(255) NOT NULL,"
+                        + "  new_name VARCHAR(255)"
+                        + ")");
+                st.execute("CREATE INDEX IF NOT EXISTS idx_fridge_outbox_user ON fridge_outbox (user_id, seq)");
+            }
+            connection = conn;
+        } catch (Exception e) {
+            System.out.println("Local replica disabled: " + e.getMessage());
+            disabled = true;
+        }
+        return connection;
+    }
+
+    // the password changed on the server: the old one must stop working offline
+    private static void dropStaleLogin(Connection conn, UserRow row) throws SQLException {
+        try (PreparedStatement sel = conn.prepareStatement("SELECT offline_login FROM users WHERE userID = ?")) {
+            sel.setInt(1, row.userId());
+            try (ResultSet rs = sel.executeQuery()) {
+                if (!rs.next() || rs.getString(1) == null || verifies(rs.getString(1), row.hashedPassword())) {
+                    return;
+                }
+            }
+        }
+        try (PreparedStatement clear = conn.prepareStatement(
+                "UPDATE users SET offline_login = NULL WHERE userID = ?")) {
+            clear.setInt(1, row.userId());
+            clear.executeUpdate();
+        }
+    }
+
+    // "pbkdf2$iterations$salt$hash", Base64
+    private static String verifier(String hashedPassword) {
+        byte[] salt = new byte[16];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder b64 = Base64.getEncoder();
+        return "pbkdf2$" + VERIFIER_ITERATIONS + "$" + b64.encodeToString(salt) + "$"
+                + b64.encodeToString(pbkdf2(hashedPassword, salt, VERIFIER_ITERATIONS));
+    }
+
+    private static boolean verifies(String verifier, String hashedPassword) {
+        if (verifier == null || hashedPassword == null) {
+            return false;
+        }
+        String[] parts = verifier.split("\\$");
+        if (parts.length != 4 || !parts[0].equals("pbkdf2")) {
+            return false;
+        }
+        try {
+            Base64.Decoder b64 = Base64.getDecoder();
+            byte[] expected = b64.decode(parts[3]);
+            byte[] actual = pbkdf2(hashedPassword, b64.decode(parts[2]), Integer.parseInt(parts[1]));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false;   // malformed verifier: treat as no offline login
+        }
+    }
+
+    private static byte[] pbkdf2(String secret, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(secret.toCharArray(), salt, iterations, VERIFIER_BITS);
+        try {
+            return SecretKeyFactory.getInstance(VERIFIER_ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(VERIFIER_ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    // the replica holds personal data; keep other local users out where the file system allows
+    private static void ownerOnly(Path directory) {
+        try {
+            Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwx------"));
+        } catch (UnsupportedOperationException | IOException e) {
+            // not a POSIX file system (Windows keeps the home directory private by default)
+        }
+    }
+
+    private static void deleteFridge(Connection conn, int userId) throws SQLException {
+        try (PreparedStatement items = conn.prepareStatement("DELETE FROM fridge_items WHERE user_id = ?");
+             PreparedStatement state = conn.prepareStatement("DELETE FROM fridge_state WHERE user_id = ?")) {
+            items.setInt(1, userId);
+            items.executeUpdate();
+            state.setInt(1, userId);
+            state.executeUpdate();
+        }
+    }
+
+    private static void ackFridgeMutations(Connection conn, int userId, long upTo) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM fridge_outbox WHERE user_id = ? AND seq <= ?")) {
+            ps.setInt(1, userId);
+            ps.setLong(2, upTo);
+            ps.executeUpdate();
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+
+    private static void inTransaction(Connection conn, SqlWork work) {
+        try {
+            conn.setAutoCommit(false);
+            try {
+                work.run();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package edu.farmingdale.recipegenerator;
 
 import javafx.animation.FadeTransition;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Rectangle2D;
@@ -143,33 +144,35 @@ public class LoginController {
             return;
         }
 
-        AzureDBConnector connector = new AzureDBConnector();
-        boolean authenticated;
-
-        try {
-            // 2) Attempt authentication
-            authenticated = connector.authenticateAndSetSession(username, password);
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            showAlert("Unexpected Error",
-                    "An unexpected error occurred:\n" + ex.getMessage(),
-                    Alert.AlertType.ERROR);
-            return;
-        }
+        AzureDBConnector connector = AzureDBConnector.getInstance();
+        loginButton.setDisable(true);
+
+        // 2) Attempt authentication off the FX thread, then handle the result on it
+        connector.authenticateAndSetSessionAsync(username, password)
+                .whenCompleteAsync((authenticated, ex) -> {
+                    loginButton.setDisable(false);
+                    if (ex != null) {
+                        ex.printStackTrace();
+                        showAlert("Unexpected Error",
+                                "An unexpected error occurred:\n" + ex.getMessage(),
+                                Alert.AlertType.ERROR);
+                        return;
+                    }
 
-        // 3) Check authentication result
-        if (authenticated) {
-            // Success: proceed to preferences
-            //System.out.println(SessionManager.getInstance().getCurrentUser().getPreferencesJson());
-            openMainWindow();
-        } else {
-            // Failure: inform the user
-            showAlert("Authentication Failed",
-                    "Invalid username or password. Please try again.",
-                    Alert.AlertType.WARNING);
-            // Optionally clear password field
-            passwordField.clear();
-        }
+                    // 3) Check authentication result
+                    if (authenticated) {
+                        // Success: proceed to preferences
+                        //System.out.println(SessionManager.getInstance().getCurrentUser().getPreferencesJson());
+                        openMainWindow();
+                    } else {
+                        // Failure: inform the user
+                        showAlert("Authentication Failed",
+                                "Invalid username or password. Please try again.",
+                                Alert.AlertType.WARNING);
+                        // Optionally clear password field
+                        passwordField.clear();
+                    }
+                }, Platform::runLater);
     }
 
     /**
@@ -3,6 +3,7 @@ package edu.farmingdale.recipegenerator;
 import jakarta.mail.*;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -31,12 +32,14 @@ import javafx.stage.Stage;
 
 import java.io.*;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
-
-import static edu.farmingdale.recipegenerator.OpenAI.getDefaultIngredients;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * The MainController class handles the user interaction for the main window of the Flavor Bot application.
@@ -56,7 +59,7 @@ public class MainController {
     @FXML
     private ListView<String> ingredientListView, fridgeView;
     @FXML
-    private Button generateButton;
+    private Button generateButton, regenerateButton, variantsButton;
     @FXML
     private Button addIngredientButton;
     @FXML
@@ -75,8 +78,27 @@ public class MainController {
     @FXML
     private StackPane stackPane;
 
+    // runs blocking OpenAI calls off the FX thread
+    private static final ExecutorService BACKGROUND = Executors.newVirtualThreadPerTaskExecutor();
+
+    // show the recipe while it is being generated instead of all at once at the end
+    private static final boolean STREAM_RECIPES =
+            Boolean.parseBoolean(System.getProperty("flavorbot.openai.stream", "true"));
+
+    // how many recipes the Variants button generates side by side (at least one)
+    private static final int VARIANT_COUNT = Math.max(1, Math.min(RecipeVariants.MAX_VARIANTS,
+            Integer.getInteger("flavorbot.variants.count", 3)));
+
     private AzureDBConnector connector;
 
+    // the variants on screen and their renderers, while they are being generated; FX thread only
+    private RecipeVariants variants;
+    private List<StreamingTextRenderer> variantRenderers = List.of();
+
+    // the recipe last shown and what it was written for, so a small ingredient change can revise it
+    private record ShownRecipe(List<String> ingredients, String preferences, String recipe) { }
+    private volatile ShownRecipe shown;
+
     private Image fridgeImg;
     private int fridgeNum;
 
@@ -99,7 +121,9 @@ public class MainController {
         fridgeImageView = new ImageView();
         fridgeImg = new Image(getClass().getResourceAsStream("/images/fridge.png"));
 
-        connector = new AzureDBConnector();
+        connector = AzureDBConnector.getInstance();
+        // loads the saved default ingredients and starts their background refresh
+        DefaultIngredients.getInstance();
 
         // Clear any existing items
         ingredientListView.getItems().clear();
@@ -154,51 +178,261 @@ public class MainController {
     /**
      * Handles recipe generation logic by passing the ingredients and preferences to OpenAI's API to generate a recipe.
      * Displays the generated recipe in the recipe text area.
-     *
-     * @throws Exception if there is an error during recipe generation.
+     * The preferences lookup and the API call both run in the background; the result is
+     * rendered on the FX thread so the window stays responsive while waiting.
+     * In streaming mode the text is appended to the recipe pane as it arrives.
+     * A recipe generated earlier for the same ingredients and preferences is served
+     * from the {@link RecipeCache} without calling the API; failing that, so is one for
+     * nearly the same ingredients (see {@link SimilarRecipeIndex}), with a note saying so.
+     * If only an ingredient or two changed since the recipe on screen was generated, that
+     * recipe is revised (see {@link RecipeRevision}) instead of a new one being written.
+     */
+    @FXML
+    private void handleGenerateRecipe() {
+        generateRecipe(false);
+    }
+
+    /**
+     * Like {@link #handleGenerateRecipe()}, but always asks the API for a new recipe,
+     * replacing any cached one.
      */
     @FXML
-    private void handleGenerateRecipe() throws Exception {
+    private void handleRegenerateRecipe() {
+        generateRecipe(true);
+    }
 
-        String preferences = connector.getUserPreferences(SessionManager.getInstance().getCurrentUser().getUserID());
+    private void generateRecipe(boolean regenerate) {
+        List<String> ingredients = List.copyOf(ingredientListView.getItems());
 
-        StringBuilder ingredientsList = new StringBuilder();
-        for (String ingredient : ingredientListView.getItems()) {
-            ingredientsList.append(ingredient).append(", ");
-        }
+        cancelVariants();
+        setGenerateButtonsDisabled(true);
 
-        if (ingredientsList.length() > 0) {
-            ingredientsList.setLength(ingredientsList.length() - 2); // Remove last comma
+        // streaming: clear the pane now and fill it pulse by pulse
+        Text recipeText = new Text();
+        StreamingTextRenderer renderer = null;
+        if (STREAM_RECIPES) {
+            recipeTextArea.getChildren().setAll(recipeText);
+            renderer = new StreamingTextRenderer(recipeText);
         }
+        StreamingTextRenderer stream = renderer;
+
+        connector.getUserPreferencesAsync(SessionManager.getInstance().getCurrentUser().getUserID())
+                .thenApplyAsync(preferences -> {
+                    // Serve a recipe generated earlier for the same request, unless asked not to
+                    RecipeCache cache = RecipeCache.getInstance();
+                    String cacheKey = RecipeCache.key(ingredients, preferences);
+                    String cached = regenerate ? null : cache.get(cacheKey);
+                    if (cached != null) {
+                        shown = new ShownRecipe(ingredients, preferences, cached);
+                        return cached;
+                    }
 
-        // Create the prompt for the OpenAI API (you can adjust this format as needed)
-        String prompt = "You are a professional chef. Using the following ingredients: "
-                + ingredientsList.toString() + ", and based on the user's preferences: "
-                + preferences + ", please generate a recipe. The recipe should include:\n"
-                + "The name of the dish (If it is possible)\n"
-                + "1. A list of ingredients.\n"
-                + "2. Clear, step-by-step instructions on how to prepare the recipe, with specific actions for each step.\n"
-                + "3. Cooking tips or suggestions where necessary.\n"
-                + "4. Serving suggestions to make the dish even better.\n"
-                + "Make sure to format the recipe with each step clearly numbered and include any necessary cooking times.";
+                    // Revise the recipe on screen if only a few ingredients changed; Regenerate writes a new one
+                    ShownRecipe previous = shown;
+                    if (!regenerate && previous != null && revisable(previous, ingredients, preferences)) {
+                        try {
+                            if (stream != null) {
+                                stream.append("Revising the previous recipe ("
+                                        + RecipeRevision.IngredientDiff.between(previous.ingredients(), ingredients)
+                                        + ")…");
+                            }
+                            String recipe = OpenAI.reviseRecipe(previous.ingredients(), previous.recipe(),
+                                    ingredients, preferences);
+                            cache.put(ingredients, preferences, recipe);
+                            shown = new ShownRecipe(ingredients, preferences, recipe);
+                            return recipe;
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    }
 
+                    // Or one generated for nearly the same ingredients; Regenerate asks for a new one
+                    if (!regenerate) {
+                        String similar = similarRecipe(ingredients, preferences);
+                        if (similar != null) {
+                            return similar;
+                        }
+                    }
+
+                    // Call OpenAI's API to get the recipe (the prompt is built from PromptTemplate)
+                    try {
+                        String recipe = stream != null
+                                ? OpenAI.streamTextResponse(ingredients, preferences, stream::append)
+                                : OpenAI.getTextResponse(ingredients, preferences);
+                        cache.put(ingredients, preferences, recipe);
+                        shown = new ShownRecipe(ingredients, preferences, recipe);
+                        return recipe;
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, BACKGROUND)
+                .whenCompleteAsync((recipe, ex) -> {
+                    setGenerateButtonsDisabled(false);
+                    if (stream != null) {
+                        stream.finish();
+                    }
+                    if (ex != null) {
+                        ex.printStackTrace();
+                        showAlert("Error", "Failed to generate recipe. " + ex.getMessage(), Alert.AlertType.ERROR);
+                        return;
+                    }
 
-//        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-//        alert.setTitle("FlavorBot is thinking a recipe");
-//        alert.setHeaderText(null);
-//        alert.setContentText("Generating recipe.....");
-//        alert.show();
+                    recipeText.setText(recipe); // 'recipe' is your generated text
+                    recipeTextArea.getChildren().setAll(recipeText);
+                }, Platform::runLater);
 
-        // Call OpenAI's API to get the recipe
-        String recipe = OpenAI.getTextResponse(prompt, preferences);
+    }
 
-//        recipeTextArea.setText(recipe);
+    // whether the previous recipe was written for the same preferences and nearly the same ingredients
+    private static boolean revisable(ShownRecipe previous, List<String> ingredients, String preferences) {
+        return RecipeCache.canonicalPreferences(previous.preferences())
+                        .equals(RecipeCache.canonicalPreferences(preferences))
+                && RecipeRevision.IngredientDiff.between(previous.ingredients(), ingredients)
+                        .worthRevising(previous.ingredients().size());
+    }
 
+    // a cached recipe for nearly the same ingredients, headed by a note saying which; null if none
+    private String similarRecipe(List<String> ingredients, String preferences) {
+        SimilarRecipeIndex index = SimilarRecipeIndex.getInstance();
+        SimilarRecipeIndex.Match match = index.findSimilar(ingredients, preferences);
+        if (match == null) {
+            return null;
+        }
+        String recipe = RecipeCache.getInstance().get(match.cacheKey());
+        if (recipe == null) {
+            index.forget(match.cacheKey());   // expired from the cache meanwhile
+            return null;
+        }
+        shown = new ShownRecipe(match.ingredients(), preferences, recipe);
+        return "(A recipe from an earlier request for " + String.join(", ", match.ingredients())
+                + ". Click Regenerate for a new one.)\n\n" + recipe;
+    }
+
+    /**
+     * Generates several different recipes for the current ingredients at the same time and
+     * shows each one as it is written, with a button to keep it. Keeping one cancels the
+     * variants still being generated and stores the kept recipe in the {@link RecipeCache},
+     * so a later Generate shows it again.
+     */
+    @FXML
+    private void handleGenerateVariants() {
+        List<String> ingredients = List.copyOf(ingredientListView.getItems());
+
+        cancelVariants();
+        setGenerateButtonsDisabled(true);
+
+        connector.getUserPreferencesAsync(SessionManager.getInstance().getCurrentUser().getUserID())
+                .whenCompleteAsync((preferences, ex) -> {
+                    if (ex != null) {
+                        ex.printStackTrace();
+                        setGenerateButtonsDisabled(false);
+                        showAlert("Error", "Failed to generate recipes. " + ex.getMessage(), Alert.AlertType.ERROR);
+                        return;
+                    }
+                    showVariants(ingredients, preferences);
+                }, Platform::runLater);
+    }
+
+    // lays out one section per variant and starts generating them; FX thread
+    private void showVariants(List<String> ingredients, String preferences) {
+        List<Text> bodies = new ArrayList<>();
+        List<Button> keepButtons = new ArrayList<>();
+        List<StreamingTextRenderer> renderers = new ArrayList<>();
+
+        // 1) a heading, the streamed text and a keep button per variant
         recipeTextArea.getChildren().clear();
-        Text recipeText = new Text(recipe); // 'recipe' is your generated text
+        for (int i = 0; i < VARIANT_COUNT; i++) {
+            Text heading = new Text("Variant " + (i + 1) + ": " + RecipeVariants.direction(i) + "\n\n");
+            heading.setStyle("-fx-font-weight: bold;");
+            Text body = new Text();
+            Button keep = new Button("Keep this recipe");
+            keep.setDisable(true);
+            recipeTextArea.getChildren().addAll(heading, body, new Text("\n\n"), keep, new Text("\n\n\n"));
+            bodies.add(body);
+            keepButtons.add(keep);
+            renderers.add(new StreamingTextRenderer(body));
+        }
+
+        // 2) the requests; results are posted back to the FX thread
+        int[] finished = {0};
+        RecipeVariants set = RecipeVariants.start(ingredients, preferences, VARIANT_COUNT, new RecipeVariants.Listener() {
+            @Override
+            public void onDelta(int index, String piece) {
+                renderers.get(index).append(piece);
+            }
+
+            @Override
+            public void onDone(int index, String recipe) {
+                Platform.runLater(() -> {
+                    if (variantRenderers != renderers) {
+                        return;   // replaced by a newer generation meanwhile
+                    }
+                    renderers.get(index).finish();
+                    bodies.get(index).setText(recipe);
+                    keepButtons.get(index).setDisable(false);
+                    variantFinished(finished);
+                });
+            }
+
+            @Override
+            public void onFailed(int index, Exception error) {
+                error.printStackTrace();
+                Platform.runLater(() -> {
+                    if (variantRenderers != renderers) {
+                        return;   // replaced by a newer generation meanwhile
+                    }
+                    renderers.get(index).finish();
+                    bodies.get(index).setText("This variant could not be generated: " + error.getMessage());
+                    variantFinished(finished);
+                });
+            }
+        });
+        variants = set;
+        variantRenderers = renderers;
+
+        // 3) keeping one cancels the others
+        for (int i = 0; i < VARIANT_COUNT; i++) {
+            int index = i;
+            keepButtons.get(i).setOnAction(e -> keepVariant(set, index, ingredients, preferences));
+        }
+    }
+
+    // re-enables the buttons once every variant has finished or failed
+    private void variantFinished(int[] finished) {
+        if (++finished[0] == VARIANT_COUNT) {
+            setGenerateButtonsDisabled(false);
+        }
+    }
 
-        recipeTextArea.getChildren().add(recipeText);
+    private void keepVariant(RecipeVariants set, int index, List<String> ingredients, String preferences) {
+        String recipe = set.pick(index);
+        if (recipe == null || set != variants) {
+            return;
+        }
+        variantRenderers.forEach(StreamingTextRenderer::finish);
+        variants = null;
+        variantRenderers = List.of();
+
+        RecipeCache.getInstance().put(ingredients, preferences, recipe);
+        shown = new ShownRecipe(ingredients, preferences, recipe);
+        recipeTextArea.getChildren().setAll(new Text(recipe));
+        setGenerateButtonsDisabled(false);
+    }
 
+    // stops the variants on screen, if any, before something else takes the recipe pane
+    private void cancelVariants() {
+        if (variants != null) {
+            variants.cancel();
+            variantRenderers.forEach(StreamingTextRenderer::finish);
+            variants = null;
+            variantRenderers = List.of();
+        }
+    }
+
+    private void setGenerateButtonsDisabled(boolean disabled) {
+        generateButton.setDisable(disabled);
+        regenerateButton.setDisable(disabled);
+        variantsButton.setDisable(disabled);
     }
 
     /**
@@ -254,25 +488,27 @@ public class MainController {
 
         stage.setScene(fridgeScene);
         stage.setTitle("Flavor Bot");
+        // write any queued fridge edits as soon as the window closes
+        stage.setOnHidden(e -> FridgeWriteBehind.getInstance().flushAll());
         stage.show();
 
     }
 
     /**
      * Displays the ingredients available in the fridge.
-     * Loads default ingredients from the OpenAI service.
-     *
-     * @throws Exception if there is an error fetching the ingredients.
+     * Shows the saved default ingredient list right away; if it is stale, a fresh list
+     * is fetched from the OpenAI service in the background and swapped in when it arrives.
      */
     @FXML
-    private void showFridge() throws Exception {
-        fridgeView.getItems().clear();
-
-        List<String> commonItems = getDefaultIngredients();
-
-        fridgeView.getItems().addAll(commonItems);
+    private void showFridge() {
+        DefaultIngredients defaults = DefaultIngredients.getInstance();
+        boolean stale = defaults.isStale();
 
+        fridgeView.getItems().setAll(defaults.getIngredients());
 
+        if (stale) {
+            defaults.refresh().thenAcceptAsync(fridgeView.getItems()::setAll, Platform::runLater);
+        }
     }
 
     /**
@@ -396,6 +632,7 @@ public class MainController {
      */
     @FXML
     public void CloseApplication(ActionEvent actionEvent) {
+        HelloApplication.flushPendingWrites();
         System.exit(0);
     }
 
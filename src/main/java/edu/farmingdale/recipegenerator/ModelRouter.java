@@ -0,0 +1,162 @@
+package edu.farmingdale.recipegenerator;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Picks the model for each kind of request and keeps latency per model.
+ *
+ * A recipe needs a capable model; the default ingredient list is a trivial request
+ * that a small, fast model answers just as well, for less. The models are set with
+ * {@code flavorbot.openai.recipeModel} and {@code flavorbot.openai.ingredientsModel}.
+ *
+ * Each model's time to first byte and total time are recorded separately, since a
+ * small model's percentiles say nothing about a large one's. They also drive request
+ * hedging (off unless {@code flavorbot.openai.hedge=true}): a request still unanswered
+ * after its model's p95 is sent a second time, and whichever answers first is used
+ * (see {@link #hedgeDelay(String, boolean)}).
+ */
+public class ModelRouter {
+
+    /**
+     * The kinds of request, each with its own model.
+     */
+    public enum RequestClass {
+        /** recipes, variants, continuations and revisions */
+        RECIPE,
+        /** the default ingredient list */
+        INGREDIENTS
+    }
+
+    /**
+     * Latency and hedging of one model's requests.
+     *
+     * @param firstByte time to the response headers
+     * @param total     time to the end of the response
+     * @param hedged    requests sent a second time because the first was slow
+     * @param hedgesWon hedged requests where the second one answered first
+     */
+    public record ModelStats(LatencyRecorder.Snapshot firstByte, LatencyRecorder.Snapshot total,
+                             long hedged, long hedgesWon) { }
+
+    // percentiles from fewer samples than this are too noisy to hedge on
+    private static final int MIN_SAMPLES = 20;
+
+    // never hedge sooner than this, however fast the model usually is
+    private static final long MIN_HEDGE_DELAY_MS = 200;
+
+    private static final class PerModel {
+        final LatencyRecorder firstByte;
+        final LatencyRecorder total;
+        final LongAdder hedged    = new LongAdder();
+        final LongAdder hedgesWon = new LongAdder();
+
+        PerModel(int window) {
+            this.firstByte = new LatencyRecorder(window);
+            this.total     = new LatencyRecorder(window);
+        }
+    }
+
+    private final Map<RequestClass, String> models;
+    private final boolean hedging;
+    private final int window;
+    private final Map<String, PerModel> perModel = new ConcurrentHashMap<>();
+
+    /**
+     * @param models  the model for each request class
+     * @param hedging whether slow requests are sent a second time
+     * @param window  recent samples kept per model for the percentiles
+     */
+    public ModelRouter(Map<RequestClass, String> models, boolean hedging, int window) {
+        this.models  = new EnumMap<>(models);
+        this.hedging = hedging;
+        this.window  = window;
+    }
+
+    /**
+     * @param window recent samples kept per model for the percentiles
+     * @return a router configured from the {@code flavorbot.openai.*} system properties
+     */
+    public static ModelRouter fromProperties(int window) {
+        return new ModelRouter(Map.of(
+                RequestClass.RECIPE,      System.getProperty("flavorbot.openai.recipeModel", "gpt-3.5-turbo"),
+                RequestClass.INGREDIENTS, System.getProperty("flavorbot.openai.ingredientsModel", "gpt-4o-mini")),
+                Boolean.getBoolean("flavorbot.openai.hedge"), window);
+    }
+
+    /**
+     * @param requestClass the kind of request
+     * @return the model to ask
+     */
+    public String model(RequestClass requestClass) {
+        return models.get(requestClass);
+    }
+
+    /**
+     * Records one answered request.
+     *
+     * @param model       the model asked
+     * @param firstByteMs time to the response headers
+     * @param totalMs     time to the end of the response
+     */
+    public void record(String model, long firstByteMs, long totalMs) {
+        PerModel m = of(model);
+        m.firstByte.record(firstByteMs);
+        m.total.record(totalMs);
+    }
+
+    /**
+     * How long to wait for a request before sending it a second time: the model's p95
+     * time to first byte for streamed requests (which return at the headers), its p95
+     * total time otherwise.
+     *
+     * @param model    the model asked
+     * @param streamed whether the response is streamed
+     * @return the delay, or null if hedging is off or the model has too few samples yet
+     */
+    public Duration hedgeDelay(String model, boolean streamed) {
+        if (!hedging) {
+            return null;
+        }
+        PerModel m = of(model);
+        LatencyRecorder.Snapshot s = (streamed ? m.firstByte : m.total).snapshot();
+        if (s.count() < MIN_SAMPLES) {
+            return null;
+        }
+        return Duration.ofMillis(Math.max(MIN_HEDGE_DELAY_MS, s.p95()));
+    }
+
+    /**
+     * Counts a request sent a second time.
+     *
+     * @param model    the model asked
+     * @param hedgeWon whether the second request answered first
+     */
+    public void hedged(String model, boolean hedgeWon) {
+        PerModel m = of(model);
+        m.hedged.increment();
+        if (hedgeWon) {
+            m.hedgesWon.increment();
+        }
+    }
+
+    /**
+     * @return latency and hedging per model, by model name
+     */
+    public Map<String, ModelStats> getStats() {
+        Map<String, ModelStats> stats = new TreeMap<>();
+        perModel.forEach((model, m) -> stats.put(model, new ModelStats(
+                m.firstByte.snapshot(), m.total.snapshot(), m.hedged.sum(), m.hedgesWon.sum())));
+        return stats;
+    }
+
+    // —— internals —— //
+
+    private PerModel of(String model) {
+        return perModel.computeIfAbsent(model, k -> new PerModel(window));
+    }
+}
@@ -3,113 +3,986 @@ package edu.farmingdale.recipegenerator;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The OpenAI class interacts with the OpenAI API to generate text responses for recipes
  * and retrieve lists of default ingredients. It is used to send user prompts and receive
  * detailed responses in the form of recipes or ingredient lists.
+ *
+ * The calls go to a {@link RecipeModelProvider}: by default the chat completions API at
+ * {@code flavorbot.openai.baseUrl} (api.openai.com unless set), or, with
+ * {@code -Dflavorbot.standin=true}, an in-process {@link StandInModelServer} replaying
+ * recorded answers, so the whole pipeline can be measured offline. Benchmarks can also
+ * install their own provider with {@link #setProvider(RecipeModelProvider)}.
+ *
+ * All calls share one long-lived HTTP/2 client, so after the first request the TLS
+ * connection to the API is reused instead of being set up again. Every request has a
+ * connect and an overall deadline, and its latency is recorded in three parts (see
+ * {@link #getLatencyStats()}). Each kind of request goes to its own model, with latency
+ * also kept per model, and slow requests can be hedged (see {@link ModelRouter} and
+ * {@link #getModelStats()}).
+ *
+ * Recipe requests are sent ahead of queued background work such as the default
+ * ingredient refresh, and each kind has its own concurrency limit (see {@link DispatchQueue}
+ * and {@link #getDispatchStats()}).
+ *
+ * Identical recipe requests made while one is already in flight (a double-click, two
+ * windows) share that request instead of sending another; see {@link #getCoalescingStats()}.
+ *
+ * Recipe requests ask for a {@code max_tokens} sized to the recipe asked for (see
+ * {@link TokenBudget}), and every call's prompt and completion token counts are logged
+ * and added up (see {@link #getTokenStats()}). A recipe cut off at {@code max_tokens}
+ * is finished with a continuation request that only generates the missing tail, instead
+ * of being shown half-finished and regenerated from scratch. A recipe for a slightly
+ * changed ingredient list can be revised rather than rewritten (see {@link #reviseRecipe}).
  */
 public class OpenAI {
 
     // API key stored as an environment variable
     private static final String API_KEY = System.getenv("key");
 
+    private static final String DEFAULT_BASE_URL = "https://api.openai.com/v1";
+
+    private static final Duration CONNECT_TIMEOUT =
+            Duration.ofSeconds(Long.getLong("flavorbot.openai.connectTimeoutSec", 10L));
+    // covers the whole exchange, up to the last byte of the response
+    private static final Duration REQUEST_TIMEOUT =
+            Duration.ofSeconds(Long.getLong("flavorbot.openai.requestTimeoutSec", 90L));
+
+    // runs the client's response handling, off the JavaFX and common pool threads
+    private static final ExecutorService HTTP_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("openai-http-", 0).factory());
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .executor(HTTP_EXECUTOR)
+            .build();
+
+    // retries after a 429, a 5xx or a failed connection, on top of the first attempt
+    private static final int  MAX_RETRIES        = Integer.getInteger("flavorbot.openai.maxRetries", 4);
+    private static final long INITIAL_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS     = 20_000;
+
+    // continuation requests for a recipe cut off at max_tokens, and the tokens each may use
+    private static final int MAX_CONTINUATIONS   = Integer.getInteger("flavorbot.openai.maxContinuations", 2);
+    private static final int CONTINUATION_TOKENS = Integer.getInteger("flavorbot.openai.continuationTokens", 400);
+
+    // how far back a continuation is checked for text repeated from the part before it
+    private static final int OVERLAP_WINDOW = 200;
+
+    // callers allowed to wait to be sent; past this a call is rejected instead of queued
+    private static final int MAX_QUEUED = Integer.getInteger("flavorbot.openai.maxQueued", 32);
+
+    // smooths bursts: a few requests at a time, a bounded queue behind them
+    private static final RateLimiter LIMITER = new RateLimiter(
+            Integer.getInteger("flavorbot.openai.maxConcurrent", 4), MAX_QUEUED);
+
+    // samples kept for the percentiles
+    private static final int LATENCY_WINDOW = 256;
+
+    // orders the calls waiting to be sent: the user's before background work. It is in
+    // front of the limiter, so its queues carry the same bound as the limiter's
+    private static final DispatchQueue DISPATCH = new DispatchQueue(
+            Integer.getInteger("flavorbot.openai.maxConcurrent", 4),
+            Integer.getInteger("flavorbot.openai.maxInteractive", 4),
+            Integer.getInteger("flavorbot.openai.maxBackground", 1),
+            MAX_QUEUED,
+            LATENCY_WINDOW);
+
+    private static final LatencyRecorder CONNECT_LATENCY    = new LatencyRecorder(LATENCY_WINDOW);
+    private static final LatencyRecorder FIRST_BYTE_LATENCY = new LatencyRecorder(LATENCY_WINDOW);
+    private static final LatencyRecorder TOTAL_LATENCY      = new LatencyRecorder(LATENCY_WINDOW);
+
+    // which model answers which request, and how fast each one is
+    private static final ModelRouter ROUTER = ModelRouter.fromProperties(LATENCY_WINDOW);
+
+    /**
+     * Latency of the requests sent so far, split into phases. Each phase is measured from
+     * when the (last) attempt went out, so queueing and retry backoff are not included;
+     * queue waits are in {@link #getDispatchStats()}.
+     *
+     * @param connect   until the connection was ready and the request body started sending
+     * @param firstByte until the response headers arrived (time to first byte)
+     * @param total     until the whole response body was read
+     */
+    public record LatencyStats(LatencyRecorder.Snapshot connect,
+                               LatencyRecorder.Snapshot firstByte,
+                               LatencyRecorder.Snapshot total) { }
+
+    private static final LongAdder CALLS             = new LongAdder();
+    private static final LongAdder PROMPT_TOKENS     = new LongAdder();
+    private static final LongAdder COMPLETION_TOKENS = new LongAdder();
+    private static final LongAdder MAX_TOKENS        = new LongAdder();
+    private static final LongAdder CONTINUATIONS     = new LongAdder();
+    private static final LongAdder REVISIONS         = new LongAdder();
+    private static final LongAdder TOKENS_SAVED      = new LongAdder();
+
+    /**
+     * Token usage of the requests answered so far, as reported by the API (or estimated
+     * locally when a response does not report it).
+     *
+     * @param calls            requests answered
+     * @param promptTokens     tokens sent
+     * @param completionTokens tokens generated
+     * @param maxTokens        sum of the {@code max_tokens} asked for, to compare against
+     *                         {@code completionTokens}
+     * @param continuations    continuation requests sent for answers cut off at {@code max_tokens}
+     * @param revisions        recipes revised instead of rewritten
+     * @param tokensSaved      completion tokens continuations and revisions did not have to
+     *                         generate again
+     */
+    public record TokenStats(long calls, long promptTokens, long completionTokens, long maxTokens,
+                             long continuations, long revisions, long tokensSaved) { }
+
+    // one answer (or part of one): its text, why it ended, and the completion tokens it cost
+    private record Completion(String text, String finishReason, int completionTokens) {
+        boolean truncated() {
+            return "length".equals(finishReason);
+        }
+    }
+
+    // a response with the dispatch slot and rate-limiter permit it was sent with; both stay
+    // taken until it is closed, once its body has been read or thrown away
+    private record Sent<T>(HttpResponse<T> response, DispatchQueue.Slot slot, RateLimiter.Permit permit)
+            implements AutoCloseable {
+        @Override
+        public void close() {
+            release(slot, permit);
+        }
+    }
+
+    // in-flight recipe requests, keyed by provider and request; progress events are streamed text
+    private static final SingleFlight<String, String, String> RECIPE_FLIGHTS = new SingleFlight<>();
+
+    // where the calls go; set after everything above, which the providers use
+    private static volatile RecipeModelProvider provider = defaultProvider();
+
+    private OpenAI() { }
+
+    /**
+     * @return the provider the calls currently go to
+     */
+    public static RecipeModelProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Sends all further calls to another provider, e.g. a stand-in for a benchmark.
+     *
+     * @param newProvider the provider to use from now on
+     */
+    public static void setProvider(RecipeModelProvider newProvider) {
+        provider = newProvider;
+    }
+
+    /**
+     * A provider speaking the OpenAI chat completions protocol, sharing this class's HTTP
+     * client, rate limiter, retries and statistics.
+     *
+     * @param baseUrl e.g. "https://api.openai.com/v1"; "/chat/completions" is appended
+     * @param apiKey  sent as the bearer token
+     * @return the provider
+     */
+    public static RecipeModelProvider chatCompletions(URI baseUrl, String apiKey) {
+        return new ChatCompletionsProvider(baseUrl, apiKey);
+    }
+
+    /**
+     * @return state of the client-side rate limiter
+     */
+    public static RateLimiter.Stats getRateLimitStats() {
+        return LIMITER.getStats();
+    }
+
+    /**
+     * @return how many recipe requests were sent and how many were saved by sharing
+     *         an identical request already in flight
+     */
+    public static SingleFlight.Stats getCoalescingStats() {
+        return RECIPE_FLIGHTS.getStats();
+    }
+
+    /**
+     * @return token usage of the OpenAI requests made so far
+     */
+    public static TokenStats getTokenStats() {
+        return new TokenStats(CALLS.sum(), PROMPT_TOKENS.sum(), COMPLETION_TOKENS.sum(), MAX_TOKENS.sum(),
+                CONTINUATIONS.sum(), REVISIONS.sum(), TOKENS_SAVED.sum());
+    }
+
+    /**
+     * @return latency of the OpenAI requests made so far
+     */
+    public static LatencyStats getLatencyStats() {
+        return new LatencyStats(CONNECT_LATENCY.snapshot(), FIRST_BYTE_LATENCY.snapshot(), TOTAL_LATENCY.snapshot());
+    }
+
+    /**
+     * @return running and queued calls and their queue wait, per priority class
+     */
+    public static Map<DispatchQueue.Priority, DispatchQueue.ClassStats> getDispatchStats() {
+        return DISPATCH.getStats();
+    }
+
+    /**
+     * @return latency and hedging per model, by model name
+     */
+    public static Map<String, ModelRouter.ModelStats> getModelStats() {
+        return ROUTER.getStats();
+    }
+
+    /**
+     * @return the model recipes are asked from
+     */
+    public static String recipeModel() {
+        return ROUTER.model(ModelRouter.RequestClass.RECIPE);
+    }
+
     /**
      * Sends a prompt to the OpenAI API to generate a detailed recipe based on the ingredients and user preferences.
      * The response includes sections like Ingredients, Preparation, Cooking Steps, Tips, and Serving Suggestions.
      *
-     * @param prompt The list of ingredients provided by the user.
+     * @param ingredients The list of ingredients provided by the user.
      * @param preferences The preferences or dietary restrictions associated with the user.
      * @return A detailed recipe text, including ingredients, steps, tips, and serving suggestions.
      * @throws Exception If there is an issue with the API request or response.
      */
-    public static String getTextResponse(String prompt, String preferences) throws Exception {
-        HttpClient client = HttpClient.newHttpClient();
-        JSONObject body = new JSONObject();
-
-        // Customizing prompt based on preferences
-        String fullPrompt = "You are a professional chef with years of experience in cooking. Based on the preferences: " + preferences +
-                ", and the following ingredients: " + prompt + ", generate a detailed recipe with clear instructions. " +
-                "Your recipe should include the following sections: Ingredients, Preparation, Cooking Steps, Tips, and Serving Suggestions.";
-
-        body.put("model", "gpt-3.5-turbo");
-        body.put("messages", new JSONArray()
-                .put(new JSONObject().put("role", "system").put("content", "You are a professional chef with expertise in creating detailed and structured recipes."))
-                .put(new JSONObject().put("role", "user").put("content", fullPrompt))
-        );
-        body.put("max_tokens", 2000);
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://api.openai.com/v1/chat/completions"))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + API_KEY)
-                .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
-                .build();
-
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    public static String getTextResponse(List<String> ingredients, String preferences) throws Exception {
+        RecipeModelProvider p = provider;
+        return RECIPE_FLIGHTS.execute(flightKey(p, ingredients, preferences), null,
+                emit -> p.getTextResponse(ingredients, preferences));
+    }
 
-        JSONObject responseBody = new JSONObject(response.body());
+    /**
+     * Same request as {@link #getTextResponse(List, String)}, but with {@code stream=true}:
+     * the recipe arrives as server-sent events and each piece of text is handed to
+     * {@code onDelta} as soon as it is parsed. Blocks until the stream ends, so call it
+     * off the JavaFX thread.
+     *
+     * @param ingredients The list of ingredients provided by the user.
+     * @param preferences The preferences or dietary restrictions associated with the user.
+     * @param onDelta     receives each new piece of text, in order, on the calling thread
+     * @return the complete recipe text
+     * @throws Exception If there is an issue with the API request or response.
+     */
+    public static String streamTextResponse(List<String> ingredients, String preferences, Consumer<String> onDelta)
+            throws Exception {
+        // keyed without the stream flag, so a blocking and a streaming caller share too
+        RecipeModelProvider p = provider;
+        return RECIPE_FLIGHTS.execute(flightKey(p, ingredients, preferences), onDelta,
+                emit -> p.streamTextResponse(ingredients, preferences, emit));
+    }
 
-        //debugging AI message
-        //        System.out.println("API Response: " + response.body());
-        //        System.out.println("API Key from Environment: " + System.getenv("APIKEY"));
+    /**
+     * Streams one of several variants of a recipe (see {@link RecipeVariants}). Unlike
+     * {@link #streamTextResponse(List, String, Consumer)} the request is never shared with
+     * another caller, so interrupting the calling thread cancels exactly this request.
+     *
+     * @param ingredients The list of ingredients provided by the user.
+     * @param preferences The preferences or dietary restrictions associated with the user.
+     * @param direction   what kind of dish this variant should be
+     * @param onDelta     receives each new piece of text, in order, on the calling thread
+     * @return the complete recipe text
+     * @throws Exception If there is an issue with the API request or response, or it was interrupted.
+     */
+    public static String streamVariant(List<String> ingredients, String preferences, String direction,
+                                       Consumer<String> onDelta) throws Exception {
+        return provider.streamVariant(ingredients, preferences, direction, onDelta);
+    }
 
-        if (responseBody.has("choices")) {
-            String text = responseBody.getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content");
-            return text.trim();
-        } else {
-            throw new Exception("Response does not contain 'choices' field");
+    /**
+     * Revises a recipe for a slightly changed ingredient list: the model sees the recipe
+     * and what changed, and answers with only the sections that change, which are merged
+     * into the recipe here. Costs a fraction of the output tokens of a new recipe. Falls
+     * back to {@link #getTextResponse(List, String)} if the answer cannot be merged.
+     *
+     * @param previousIngredients the ingredients the recipe was written for
+     * @param previousRecipe      the recipe
+     * @param ingredients         the ingredients now
+     * @param preferences         the user's preferences JSON
+     * @return the revised recipe
+     * @throws Exception If there is an issue with the API request or response.
+     */
+    public static String reviseRecipe(List<String> previousIngredients, String previousRecipe,
+                                      List<String> ingredients, String preferences) throws Exception {
+        String changes = provider.reviseRecipe(previousIngredients, previousRecipe, ingredients, preferences);
+        String revised = RecipeRevision.merge(previousRecipe, changes);
+        if (revised == null) {
+            System.out.println("OpenAI revision had no sections to merge; writing a new recipe");
+            return getTextResponse(ingredients, preferences);
         }
+
+        int changed = TokenEstimator.estimate(changes);
+        int whole = TokenEstimator.estimate(revised);
+        REVISIONS.increment();
+        TOKENS_SAVED.add(Math.max(0, whole - changed));
+        System.out.println("OpenAI revision: ~" + changed + " tokens generated for a ~" + whole + "-token recipe");
+        return revised;
     }
+
     /**
      * Sends a prompt to the OpenAI API to generate a list of 20 commonly available cooking ingredients.
      * The ingredients are returned as a list of strings, one per line.
+     * Sent as background work, behind any recipe request waiting to be sent.
      *
      * @return A list of 20 commonly available cooking ingredients.
      * @throws Exception If there is an issue with the API request or response.
      */
     public static List<String> getDefaultIngredients() throws Exception {
-        HttpClient client = HttpClient.newHttpClient();
+        return provider.getDefaultIngredients();
+    }
+
+    // —— internals —— //
+
+    private static RecipeModelProvider defaultProvider() {
+        if (Boolean.getBoolean("flavorbot.standin")) {
+            StandInModelServer server = StandInModelServer.startDefault();
+            System.out.println("Using the stand-in model server at " + server.baseUrl());
+            return chatCompletions(server.baseUrl(), "stand-in");
+        }
+        return chatCompletions(URI.create(System.getProperty("flavorbot.openai.baseUrl", DEFAULT_BASE_URL)), API_KEY);
+    }
+
+    private static String flightKey(RecipeModelProvider p, List<String> ingredients, String preferences) {
+        return p.name() + "\n" + String.join("\n", ingredients) + "\n" + preferences;
+    }
+
+    /**
+     * The chat completions API: the real one, or anything speaking its protocol.
+     */
+    private static final class ChatCompletionsProvider implements RecipeModelProvider {
+        private final URI endpoint;
+        private final String apiKey;
+
+        ChatCompletionsProvider(URI baseUrl, String apiKey) {
+            String base = baseUrl.toString();
+            this.endpoint = URI.create((base.endsWith("/") ? base : base + "/") + "chat/completions");
+            this.apiKey   = apiKey;
+        }
+
+        @Override
+        public String name() {
+            return endpoint.toString();
+        }
+
+        @Override
+        public String getTextResponse(List<String> ingredients, String preferences) throws Exception {
+            return completeToEnd(recipeRequestBody(ingredients, preferences, null));
+        }
+
+        @Override
+        public String streamTextResponse(List<String> ingredients, String preferences, Consumer<String> onDelta)
+                throws Exception {
+            return streamToEnd(recipeRequestBody(ingredients, preferences, null), onDelta);
+        }
+
+        @Override
+        public String streamVariant(List<String> ingredients, String preferences, String direction,
+                                    Consumer<String> onDelta) throws Exception {
+            return streamToEnd(recipeRequestBody(ingredients, preferences, direction), onDelta);
+        }
+
+        @Override
+        public String reviseRecipe(List<String> previousIngredients, String previousRecipe, List<String> ingredients,
+                                   String preferences) throws Exception {
+            return completeToEnd(revisionBody(previousIngredients, previousRecipe, ingredients, preferences));
+        }
+
+        // sends a request, continuing the answer while it is cut off at max_tokens
+        private String completeToEnd(JSONObject body) throws Exception {
+            Completion part = complete(body);
+            String text = part.text();
+            int generated = part.completionTokens();
+
+            // a recipe cut off at max_tokens is continued, not regenerated
+            for (int i = 0; i < MAX_CONTINUATIONS && part.truncated(); i++) {
+                recordContinuation(generated);
+                part = complete(continuationBody(body, text));
+                text += trimOverlap(text, part.text());
+                generated += part.completionTokens();
+            }
+            return text.trim();
+        }
+
+        // sends one request and reads the first choice
+        private Completion complete(JSONObject body) throws Exception {
+            HttpResponse<String> response = post(body, DispatchQueue.Priority.INTERACTIVE);
+
+            JSONObject responseBody = parseBody(response);
+
+            //debugging AI message
+            //        System.out.println("API Response: " + response.body());
+            //        System.out.println("API Key from Environment: " + System.getenv("APIKEY"));
+
+            if (responseBody.has("choices")) {
+                JSONObject choice = responseBody.getJSONArray("choices").getJSONObject(0);
+                String text = choice.getJSONObject("message").getString("content");
+                int completionTokens = recordUsage(body, responseBody.optJSONObject("usage"), text);
+                return new Completion(text, choice.optString("finish_reason", "stop"), completionTokens);
+            } else {
+                throw new Exception("Response does not contain 'choices' field" + describeError(response, responseBody));
+            }
+        }
+
+        // streams a recipe, continuing it while it is cut off at max_tokens
+        private String streamToEnd(JSONObject body, Consumer<String> onDelta) throws Exception {
+            Completion part = stream(body, onDelta);
+            String text = part.text();
+            int generated = part.completionTokens();
+
+            for (int i = 0; i < MAX_CONTINUATIONS && part.truncated(); i++) {
+                recordContinuation(generated);
+                OverlapFilter tail = new OverlapFilter(text, onDelta);
+                part = stream(continuationBody(body, text), tail);
+                text += tail.finish();
+                generated += part.completionTokens();
+            }
+            return text.trim();
+        }
+
+        // sends a chat completion request with stream=true and hands out the text as it arrives
+        private Completion stream(JSONObject body, Consumer<String> onDelta) throws Exception {
+            body.put("stream", true);
+            // ask for a last chunk carrying the token usage
+            body.put("stream_options", new JSONObject().put("include_usage", true));
+
+            Timing timing = new Timing(body.getString("model"));
+            StringBuilder text = new StringBuilder();
+            JSONObject usage = null;
+            String finishReason = "stop";
+            // the slot and permit are held until the last line has been read
+            try (Sent<Stream<String>> sent = send(body, DispatchQueue.Priority.INTERACTIVE,
+                         HttpResponse.BodyHandlers.ofLines(), timing);
+                 Stream<String> lines = sent.response().body()) {
+                HttpResponse<Stream<String>> response = sent.response();
+                if (response.statusCode() != 200) {
+                    throw new Exception("OpenAI request failed (" + response.statusCode() + "): "
+                            + lines.collect(Collectors.joining("\n")));
+                }
+                Iterator<String> it = lines.iterator();
+                while (it.hasNext()) {
+                    // 1) each event is a "data: {...}" line; blank lines separate events
+                    String line = it.next();
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+                    String data = line.substring(5).trim();
+                    if (data.equals("[DONE]")) {
+                        break;
+                    }
+
+                    // 2) pull the new text out of the chunk; the usage chunk has no choices
+                    JSONObject chunk = new JSONObject(data);
+                    if (chunk.optJSONObject("usage") != null) {
+                        usage = chunk.getJSONObject("usage");
+                    }
+                    JSONArray choices = chunk.optJSONArray("choices");
+                    if (choices == null || choices.isEmpty()) {
+                        continue;
+                    }
+                    if (!choices.getJSONObject(0).isNull("finish_reason")) {
+                        finishReason = choices.getJSONObject(0).optString("finish_reason", finishReason);
+                    }
+                    JSONObject delta = choices.getJSONObject(0).optJSONObject("delta");
+                    String piece = delta == null ? "" : delta.optString("content", "");
+                    if (!piece.isEmpty()) {
+                        text.append(piece);
+                        onDelta.accept(piece);
+                    }
+                }
+            } finally {
+                timing.finish();
+            }
+            int completionTokens = recordUsage(body, usage, text.toString());
+            return new Completion(text.toString(), finishReason, completionTokens);
+        }
+
+        @Override
+        public List<String> getDefaultIngredients() throws Exception {
+            JSONObject body = new JSONObject();
+
+            String prompt = PromptTemplate.DEFAULT_INGREDIENTS.render();
+
+            body.put("model", ROUTER.model(ModelRouter.RequestClass.INGREDIENTS));
+            body.put("messages", new JSONArray()
+                    .put(new JSONObject().put("role", "user").put("content", prompt))
+            );
+            body.put("max_tokens", 500);
+
+            HttpResponse<String> response = post(body, DispatchQueue.Priority.BACKGROUND);
+            JSONObject responseBody = parseBody(response);
+
+            if (responseBody.has("choices")) {
+                String text = responseBody.getJSONArray("choices")
+                        .getJSONObject(0)
+                        .getJSONObject("message")
+                        .getString("content")
+                        .trim();
+                recordUsage(body, responseBody.optJSONObject("usage"), text);
+
+                // Split the result into a list
+                return List.of(text.split("\\r?\\n"));
+            } else {
+                throw new Exception("OpenAI response missing 'choices'" + describeError(response, responseBody));
+            }
+        }
+
+        // sends a chat completion request and reads the whole response
+        private HttpResponse<String> post(JSONObject body, DispatchQueue.Priority priority) throws Exception {
+            Timing timing = new Timing(body.getString("model"));
+            try (Sent<String> sent = send(body, priority, HttpResponse.BodyHandlers.ofString(), timing)) {
+                return sent.response();   // the body is already read in full
+            } finally {
+                timing.finish();
+            }
+        }
+
+        /**
+         * Sends a chat completion request on the shared client, through the dispatch queue
+         * and the rate limiter, and returns once the response headers are in. 429s, 5xx responses and connection
+         * failures are retried with exponential backoff and jitter, honoring Retry-After;
+         * the last attempt's response is returned whatever its status. Each attempt may be
+         * hedged (see {@link #exchange}).
+         *
+         * The response comes back with the slot and permit it was sent with, still taken, so a
+         * streamed body counts against the limits until it has been read; the caller closes it.
+         */
+        private <T> Sent<T> send(JSONObject body, DispatchQueue.Priority priority,
+                                 HttpResponse.BodyHandler<T> handler, Timing timing) throws Exception {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(endpoint)
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .header("Authorization", "Bearer " + apiKey)
+                    .POST(new TimedPublisher(
+                            HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8), timing.connected))
+                    .build();
+            int tokenCost = body.optInt("max_tokens", 0)
+                    + TokenEstimator.estimateMessages(body.getJSONArray("messages"));
+            String model = body.getString("model");
+            boolean streamed = body.optBoolean("stream");
+
+            for (int attempt = 0; ; attempt++) {
+                boolean lastAttempt = attempt >= MAX_RETRIES;
+                Duration backoff;
+                DispatchQueue.Slot slot = DISPATCH.acquire(priority);
+                RateLimiter.Permit permit = null;
+                boolean handedOver = false;
+                try {
+                    permit = LIMITER.acquire(tokenCost);
+                    timing.begin();
+                    // the body handler is created once the response headers are in; a response
+                    // that will be retried has its body discarded
+                    HttpResponse<T> response = exchange(request, info -> {
+                        timing.firstByte.compareAndSet(0, System.nanoTime());
+                        return !lastAttempt && isRetryable(info.statusCode())
+                                ? HttpResponse.BodySubscribers.replacing(null)
+                                : handler.apply(info);
+                    }, model, streamed, tokenCost);
+                    LIMITER.update(response.headers());
+                    if (lastAttempt || !isRetryable(response.statusCode())) {
+                        handedOver = true;
+                        return new Sent<>(response, slot, permit);
+                    }
+                    backoff = retryAfter(response.headers()).orElse(backoff(attempt));
+                    if (response.statusCode() == 429) {
+                        LIMITER.pauseFor(backoff);   // everyone waits, not just this caller
+                    }
+                    System.out.println("OpenAI returned " + response.statusCode() + "; retrying in "
+                            + backoff.toMillis() + " ms");
+                } catch (HttpTimeoutException e) {
+                    if (lastAttempt || !(e instanceof HttpConnectTimeoutException)) {
+                        throw e;   // a request that ran into its deadline is not retried
+                    }
+                    backoff = backoff(attempt);
+                } catch (IOException e) {
+                    if (lastAttempt) {
+                        throw e;
+                    }
+                    backoff = backoff(attempt);
+                    System.out.println("OpenAI request failed (" + e + "); retrying in " + backoff.toMillis() + " ms");
+                } finally {
+                    if (!handedOver) {
+                        release(slot, permit);   // nobody waits on a slot through the backoff
+                    }
+                }
+                Thread.sleep(backoff.toMillis());
+            }
+        }
+    }
+
+    /**
+     * Sends one attempt. With hedging on, a request still unanswered after its model's p95
+     * is sent again if the rate limiter has a permit to spare; the first answer wins and
+     * the other request is cancelled. Interrupting the caller cancels both.
+     */
+    private static <T> HttpResponse<T> exchange(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                                String model, boolean streamed, int tokenCost) throws Exception {
+        Duration hedgeAfter = ROUTER.hedgeDelay(model, streamed);
+        if (hedgeAfter == null) {
+            return CLIENT.send(request, handler);
+        }
+
+        // 1) the first request, given its p95 to answer
+        CompletableFuture<HttpResponse<T>> first = CLIENT.sendAsync(request, handler);
+        try {
+            return first.get(hedgeAfter.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // slow: hedge below
+        } catch (InterruptedException e) {
+            first.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+
+        // 2) a second one, if it does not take a slot someone else is waiting for
+        try (RateLimiter.Permit extra = DISPATCH.hasWaiting() ? null : LIMITER.tryAcquire(tokenCost)) {
+            if (extra == null) {
+                return await(first, List.of(first));
+            }
+            CompletableFuture<HttpResponse<T>> second = CLIENT.sendAsync(request, handler);
+            HttpResponse<T> response = await(firstSuccessful(first, second), List.of(first, second));
+            boolean hedgeWon = second.isDone() && !second.isCompletedExceptionally() && second.join() == response;
+            ROUTER.hedged(model, hedgeWon);
+            (hedgeWon ? first : second).cancel(true);
+            System.out.println("OpenAI request to " + model + " was slower than " + hedgeAfter.toMillis()
+                    + " ms and was hedged; the " + (hedgeWon ? "second" : "first") + " request answered first");
+            return response;
+        }
+    }
+
+    // gives back a slot and the permit taken with it (null if it was never granted)
+    private static void release(DispatchQueue.Slot slot, RateLimiter.Permit permit) {
+        if (permit != null) {
+            permit.close();
+        }
+        slot.close();
+    }
+
+    // completes with whichever response arrives first, or the last failure if both fail;
+    // a response that loses the race has its body closed
+    private static <T> CompletableFuture<HttpResponse<T>> firstSuccessful(CompletableFuture<HttpResponse<T>> a,
+                                                                          CompletableFuture<HttpResponse<T>> b) {
+        CompletableFuture<HttpResponse<T>> winner = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        for (CompletableFuture<HttpResponse<T>> f : List.of(a, b)) {
+            f.whenComplete((response, error) -> {
+                if (error != null) {
+                    if (failed.incrementAndGet() == 2) {
+                        winner.completeExceptionally(error);
+                    }
+                } else if (!winner.complete(response) && response.body() instanceof AutoCloseable body) {
+                    try {
+                        body.close();
+                    } catch (Exception ignored) {
+                        // the losing stream is being thrown away anyway
+                    }
+                }
+            });
+        }
+        return winner;
+    }
+
+    // waits for a response, cancelling the requests behind it if the caller is interrupted
+    private static <T> HttpResponse<T> await(CompletableFuture<HttpResponse<T>> response,
+                                             List<CompletableFuture<HttpResponse<T>>> requests) throws Exception {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            requests.forEach(r -> r.cancel(true));
+            throw e;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    // the exception the synchronous client would have thrown
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof Exception ex ? ex : e;
+    }
+
+    // the fixed instructions go in the system message, so every request starts with the same prefix;
+    // a direction (may be null) asks for a particular variant
+    private static JSONObject recipeRequestBody(List<String> ingredients, String preferences, String direction) {
         JSONObject body = new JSONObject();
 
-        String prompt = "Generate a list of 20 different, commonly available cooking ingredients. Only list the ingredient names, one per line, without numbering or extra text.";
+        Map<String, String> values = Map.of(
+                "ingredients", String.join(", ", ingredients),
+                "preferences", PromptTemplate.compactPreferences(preferences),
+                "direction",   direction == null ? "" : direction);
+        String userPrompt = (direction == null ? PromptTemplate.RECIPE_USER : PromptTemplate.RECIPE_VARIANT_USER)
+                .render(values);
 
-        body.put("model", "gpt-3.5-turbo");
+        body.put("model", ROUTER.model(ModelRouter.RequestClass.RECIPE));
         body.put("messages", new JSONArray()
-                .put(new JSONObject().put("role", "user").put("content", prompt))
+                .put(new JSONObject().put("role", "system").put("content", PromptTemplate.RECIPE_SYSTEM.render()))
+                .put(new JSONObject().put("role", "user").put("content", userPrompt))
         );
-        body.put("max_tokens", 500);
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://api.openai.com/v1/chat/completions"))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + API_KEY)
-                .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
-                .build();
-
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        JSONObject responseBody = new JSONObject(response.body());
-
-        if (responseBody.has("choices")) {
-            String text = responseBody.getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content")
-                    .trim();
-
-            // Split the result into a list
-            return List.of(text.split("\\r?\\n"));
-        } else {
-            throw new Exception("OpenAI response missing 'choices'");
+        body.put("max_tokens", TokenBudget.recipeMaxTokens(preferences));
+        return body;
+    }
+
+    // the original request and its recipe, then what changed; the previous recipe sets the length,
+    // though the answer is expected to be much shorter
+    private static JSONObject revisionBody(List<String> previousIngredients, String previousRecipe,
+                                           List<String> ingredients, String preferences) {
+        RecipeRevision.IngredientDiff diff = RecipeRevision.IngredientDiff.between(previousIngredients, ingredients);
+        JSONObject body = recipeRequestBody(previousIngredients, preferences, null);
+        body.getJSONArray("messages")
+                .put(new JSONObject().put("role", "assistant").put("content", previousRecipe))
+                .put(new JSONObject().put("role", "user")
+                        .put("content", PromptTemplate.REVISE.render(Map.of("changes", diff.toString()))));
+        body.put("max_tokens", Math.min(body.getInt("max_tokens"), TokenEstimator.estimate(previousRecipe) + 50));
+        return body;
+    }
+
+    // the original request, plus the answer so far and a request to go on from where it stopped
+    private static JSONObject continuationBody(JSONObject original, String soFar) {
+        JSONObject body = new JSONObject(original.toString());
+        body.getJSONArray("messages")
+                .put(new JSONObject().put("role", "assistant").put("content", soFar))
+                .put(new JSONObject().put("role", "user").put("content", PromptTemplate.CONTINUE.render()));
+        body.put("max_tokens", CONTINUATION_TOKENS);
+        return body;
+    }
+
+    private static void recordContinuation(int tokensKept) {
+        CONTINUATIONS.increment();
+        TOKENS_SAVED.add(tokensKept);
+        System.out.println("OpenAI answer was cut off at max_tokens; continuing it (" + tokensKept
+                + " tokens kept instead of regenerated)");
+    }
+
+    // the model sometimes starts a continuation by repeating the end of what it already wrote
+    private static String trimOverlap(String before, String continuation) {
+        int max = Math.min(OVERLAP_WINDOW, Math.min(before.length(), continuation.length()));
+        for (int k = max; k >= 8; k--) {   // shorter matches are more likely chance than repetition
+            if (before.endsWith(continuation.substring(0, k))) {
+                return continuation.substring(k);
+            }
+        }
+        return continuation;
+    }
+
+    /**
+     * Passes a streamed continuation on, minus any text it repeats from the part before it.
+     * Holds back the first {@link #OVERLAP_WINDOW} characters until the overlap is known.
+     */
+    private static final class OverlapFilter implements Consumer<String> {
+        private final String before;
+        private final Consumer<String> downstream;
+        private final StringBuilder held = new StringBuilder();
+        private final StringBuilder passed = new StringBuilder();
+        private boolean resolved;
+
+        OverlapFilter(String before, Consumer<String> downstream) {
+            this.before     = before;
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void accept(String piece) {
+            if (resolved) {
+                pass(piece);
+                return;
+            }
+            held.append(piece);
+            if (held.length() >= OVERLAP_WINDOW) {
+                resolve();
+            }
+        }
+
+        // flushes anything still held; returns the text passed on in total
+        String finish() {
+            if (!resolved) {
+                resolve();
+            }
+            return passed.toString();
+        }
+
+        private void resolve() {
+            resolved = true;
+            String trimmed = trimOverlap(before, held.toString());
+            if (!trimmed.isEmpty()) {
+                pass(trimmed);
+            }
+        }
+
+        private void pass(String piece) {
+            passed.append(piece);
+            downstream.accept(piece);
+        }
+    }
+
+    // adds one answered call to the token totals and logs it; estimates what the API did not report
+    // returns the completion tokens
+    private static int recordUsage(JSONObject body, JSONObject usage, String completion) {
+        boolean reported = usage != null && usage.has("prompt_tokens");
+        int prompt = reported
+                ? usage.optInt("prompt_tokens")
+                : TokenEstimator.estimateMessages(body.getJSONArray("messages"));
+        int completed = reported
+                ? usage.optInt("completion_tokens")
+                : TokenEstimator.estimate(completion);
+        int maxTokens = body.optInt("max_tokens", 0);
+
+        CALLS.increment();
+        PROMPT_TOKENS.add(prompt);
+        COMPLETION_TOKENS.add(completed);
+        MAX_TOKENS.add(maxTokens);
+        System.out.println("OpenAI tokens: prompt=" + prompt + " completion=" + completed
+                + " max_tokens=" + maxTokens + (reported ? "" : " (estimated)"));
+        return completed;
+    }
+
+    // error responses (a proxy's 502 page, for example) are not always JSON
+    private static JSONObject parseBody(HttpResponse<String> response) {
+        try {
+            return new JSONObject(response.body());
+        } catch (JSONException e) {
+            return new JSONObject();
+        }
+    }
+
+    // " (HTTP 429: Rate limit reached ...)" for an API error response
+    private static String describeError(HttpResponse<String> response, JSONObject body) {
+        JSONObject error = body.optJSONObject("error");
+        String message = error != null ? error.optString("message", "") : "";
+        return " (HTTP " + response.statusCode() + (message.isEmpty() ? "" : ": " + message) + ")";
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    // exponential backoff with jitter: a random delay between half and all of base * 2^attempt, capped
+    private static Duration backoff(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(attempt, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+    }
+
+    // Retry-After in seconds or as an HTTP date, or OpenAI's retry-after-ms
+    private static Optional<Duration> retryAfter(HttpHeaders headers) {
+        try {
+            Optional<String> millis = headers.firstValue("retry-after-ms");
+            if (millis.isPresent()) {
+                return Optional.of(Duration.ofMillis((long) Double.parseDouble(millis.get().trim())));
+            }
+            Optional<String> value = headers.firstValue("retry-after");
+            if (value.isEmpty()) {
+                return Optional.empty();
+            }
+            String v = value.get().trim();
+            if (v.chars().allMatch(Character::isDigit)) {
+                return Optional.of(Duration.ofSeconds(Long.parseLong(v)));
+            }
+            ZonedDateTime at = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration until = Duration.between(ZonedDateTime.now(at.getZone()), at);
+            return Optional.of(until.isNegative() ? Duration.ZERO : until);
+        } catch (RuntimeException e) {
+            return Optional.empty();   // unparseable: fall back to our own backoff
+        }
+    }
+
+    private static long millisBetween(long startNanos, long endNanos) {
+        return Duration.ofNanos(endNanos - startNanos).toMillis();
+    }
+
+    // phase timestamps of one request's last attempt; finish() records them once the body has
+    // been read. Time spent waiting for a slot, a permit or a retry is not part of them (see
+    // getDispatchStats() and getRateLimitStats() for that)
+    private static final class Timing {
+        volatile long start;
+        final AtomicLong connected = new AtomicLong();
+        final AtomicLong firstByte = new AtomicLong();
+        final String model;
+
+        Timing(String model) {
+            this.model = model;
+        }
+
+        // called as each attempt goes out, once it holds its slot and permit
+        void begin() {
+            connected.set(0);
+            firstByte.set(0);
+            start = System.nanoTime();
+        }
+
+        void finish() {
+            long end = System.nanoTime();
+            if (connected.get() != 0) {
+                CONNECT_LATENCY.record(millisBetween(start, connected.get()));
+            }
+            if (firstByte.get() != 0) {
+                long toFirstByte = millisBetween(start, firstByte.get());
+                long total = millisBetween(start, end);
+                FIRST_BYTE_LATENCY.record(toFirstByte);
+                TOTAL_LATENCY.record(total);
+                ROUTER.record(model, toFirstByte, total);
+            }
+        }
+    }
+
+    /**
+     * Request body publisher that notes when the client starts pulling the body, which
+     * happens once the connection (or HTTP/2 stream) is ready.
+     */
+    private static final class TimedPublisher implements HttpRequest.BodyPublisher {
+        private final HttpRequest.BodyPublisher delegate;
+        private final AtomicLong subscribedAt;
+
+        TimedPublisher(HttpRequest.BodyPublisher delegate, AtomicLong subscribedAt) {
+            this.delegate     = delegate;
+            this.subscribedAt = subscribedAt;
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            subscribedAt.compareAndSet(0, System.nanoTime());
+            delegate.subscribe(subscriber);
         }
     }
 }
@@ -0,0 +1,24 @@
+package edu.farmingdale.recipegenerator;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing.
+ *
+ * To fetch the next page, pass {@link #nextAfterId()} as the {@code afterId} of the
+ * next call. Each page costs one index range scan of {@code limit + 1} rows no matter
+ * how deep into the table it is.
+ *
+ * @param items       rows on this page, in ascending ID order
+ * @param nextAfterId ID of the last row on this page (the cursor for the next page),
+ *                    or the requested {@code afterId} if the page is empty
+ * @param hasMore     true if at least one more row exists after this page
+ * @param <T>         the row type
+ */
+public record Page<T>(List<T> items, int nextAfterId, boolean hasMore) {
+
+    /**
+     * Cursor value that starts a listing from the first row.
+     */
+    public static final int FIRST = 0;
+}
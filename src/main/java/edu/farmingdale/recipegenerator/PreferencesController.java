@@ -213,7 +213,7 @@ public class PreferencesController {
         );
 
         // Update preferences in database
-        AzureDBConnector connector = new AzureDBConnector();
+        AzureDBConnector connector = AzureDBConnector.getInstance();
         connector.updateUserPreferences(
                 SessionManager.getInstance().getCurrentUser().getUserID(), json
         );
@@ -0,0 +1,215 @@
+package edu.farmingdale.recipegenerator;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A prompt with {@code {{name}}} placeholders, parsed once into literal and variable
+ * segments so rendering is a single pass of appends.
+ *
+ * The recipe prompts are split so that everything fixed lives in {@link #RECIPE_SYSTEM},
+ * which is sent first and is byte-for-byte identical on every call (the provider can
+ * reuse its cached prefix), and the user message carries only the ingredients and the
+ * preferences, each rendered once.
+ */
+public final class PromptTemplate {
+
+    // declared before the templates below, which are compiled with it
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{(\\w+)}}");
+
+    /**
+     * Fixed instructions for every recipe request.
+     */
+    public static final PromptTemplate RECIPE_SYSTEM = compile(
+            "You are a professional chef who writes clear, detailed recipes.\n"
+            + "Write one recipe using the ingredients given, following the user's preferences. Include:\n"
+            + "- The name of the dish (if possible)\n"
+            + "1. Ingredients: a list with quantities.\n"
+            + "2. Preparation and Cooking Steps: numbered, one specific action per step, with cooking times.\n"
+            + "3. Tips: cooking tips or suggestions where useful.\n"
+            + "4. Serving Suggestions.");
+
+    /**
+     * The per-request part of a recipe request.
+     */
+    public static final PromptTemplate RECIPE_USER = compile(
+            "Ingredients: {{ingredients}}\nPreferences: {{preferences}}");
+
+    /**
+     * The per-request part of a request for one of several variants.
+     */
+    public static final PromptTemplate RECIPE_VARIANT_USER = compile(
+            "Ingredients: {{ingredients}}\nPreferences: {{preferences}}\nMake it {{direction}}.");
+
+    /**
+     * Sent after a recipe that was cut off at {@code max_tokens}, to get only the rest of it.
+     */
+    public static final PromptTemplate CONTINUE = compile(
+            "Your answer was cut off. Continue exactly where it stopped, without repeating anything.");
+
+    /**
+     * Sent after a recipe, to get only the parts that change for a slightly different
+     * ingredient list.
+     */
+    public static final PromptTemplate REVISE = compile(
+            "The ingredients changed: {{changes}}. Revise the recipe for them.\n"
+            + "Reply with only the sections that change, each under its heading exactly as written above, "
+            + "and the new name of the dish first if it changes. Leave out every section that stays the same.");
+
+    /**
+     * The request for the default ingredient list.
+     */
+    public static final PromptTemplate DEFAULT_INGREDIENTS = compile(
+            "Generate a list of 20 different, commonly available cooking ingredients. "
+            + "Only list the ingredient names, one per line, without numbering or extra text.");
+
+    // preferences key → label; order is the order they are rendered in
+    private static final String[][] PREFERENCE_LABELS = {
+            {"foodStyle",         "cuisine"},
+            {"mealType",          "meal"},
+            {"dietaryPreference", "diet"},
+            {"allergies",         "allergies"},
+            {"cookingSkill",      "skill"},
+            {"cookingTime",       "time"},
+            {"numberOfServings",  "servings"},
+            {"portionSize",       "portions"},
+            {"spiceLevel",        "spice"},
+            {"flavorProfile",     "flavor"},
+            {"cleanupEffort",     "cleanup"},
+            {"additionalNotes",   "notes"},
+    };
+
+    // a segment is either literal text or the name of a variable
+    private record Segment(String text, boolean variable) { }
+
+    private final List<Segment> segments;
+    private final List<String> variables;
+    private final int fixedTokens;
+
+    private PromptTemplate(List<Segment> segments) {
+        this.segments = segments;
+        List<String> names = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        for (Segment s : segments) {
+            if (s.variable()) {
+                names.add(s.text());
+            } else {
+                literal.append(s.text());
+            }
+        }
+        this.variables   = Collections.unmodifiableList(names);
+        this.fixedTokens = TokenEstimator.estimate(literal.toString());
+    }
+
+    /**
+     * Parses a template.
+     *
+     * @param template text with {@code {{name}}} placeholders
+     * @return the compiled template
+     */
+    public static PromptTemplate compile(String template) {
+        List<Segment> segments = new ArrayList<>();
+        Matcher m = PLACEHOLDER.matcher(template);
+        int last = 0;
+        while (m.find()) {
+            if (m.start() > last) {
+                segments.add(new Segment(template.substring(last, m.start()), false));
+            }
+            segments.add(new Segment(m.group(1), true));
+            last = m.end();
+        }
+        if (last < template.length()) {
+            segments.add(new Segment(template.substring(last), false));
+        }
+        return new PromptTemplate(List.copyOf(segments));
+    }
+
+    /**
+     * @param values a value for every variable of the template
+     * @return the rendered prompt
+     * @throws IllegalArgumentException if a variable has no value
+     */
+    public String render(Map<String, String> values) {
+        StringBuilder out = new StringBuilder();
+        for (Segment s : segments) {
+            if (!s.variable()) {
+                out.append(s.text());
+                continue;
+            }
+            String value = values.get(s.text());
+            if (value == null) {
+                throw new IllegalArgumentException("No value for prompt variable '" + s.text() + "'");
+            }
+            out.append(value);
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return the template rendered with no variables (for templates without any)
+     */
+    public String render() {
+        return render(Map.of());
+    }
+
+    /**
+     * @return the template's variable names, in order of appearance
+     */
+    public List<String> variables() {
+        return variables;
+    }
+
+    /**
+     * @return estimated tokens of the template's fixed text, i.e. what every call pays
+     *         before any variable is filled in
+     */
+    public int fixedTokens() {
+        return fixedTokens;
+    }
+
+    /**
+     * Renders preferences JSON as one short line, e.g.
+     * "cuisine Italian; diet Vegan; skill Beginner; servings 4; spice 3/10".
+     * Unset values ("None", empty, spice 0) are left out, since they tell the model nothing.
+     *
+     * @param preferencesJson the user's preferences JSON
+     * @return the compact form, "none" if nothing is set, or the input itself if it is not valid JSON
+     */
+    public static String compactPreferences(String preferencesJson) {
+        if (preferencesJson == null || preferencesJson.isBlank()) {
+            return "none";
+        }
+        JSONObject prefs;
+        try {
+            prefs = new JSONObject(preferencesJson);
+        } catch (JSONException e) {
+            return preferencesJson.strip();   // still better than dropping the user's preferences
+        }
+
+        StringBuilder out = new StringBuilder();
+        for (String[] label : PREFERENCE_LABELS) {
+            String value = prefs.opt(label[0]) == null ? "" : String.valueOf(prefs.opt(label[0])).strip();
+            if (value.isEmpty() || value.equals("None") || value.equals("Doesn’t matter")) {
+                continue;
+            }
+            if (label[0].equals("spiceLevel")) {
+                if (value.equals("0")) {
+                    continue;
+                }
+                value += "/10";
+            }
+            if (out.length() > 0) {
+                out.append("; ");
+            }
+            out.append(label[1]).append(' ').append(value.replaceAll("\\s+", " "));
+        }
+        return out.length() == 0 ? "none" : out.toString();
+    }
+}
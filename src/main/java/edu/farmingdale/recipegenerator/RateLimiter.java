@@ -0,0 +1,264 @@
+package edu.farmingdale.recipegenerator;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Client-side limiter for calls to a rate-limited HTTP API.
+ *
+ * Callers take a {@link Permit} before sending a request. A permit is only handed out
+ * when all of these allow it:
+ * - a concurrency limit on requests being sent at the same time;
+ * - a request bucket and a token bucket, refilled continuously and re-synced from the
+ *   {@code x-ratelimit-*} headers of every response (both are unlimited until the
+ *   first response says otherwise);
+ * - a pause set after a 429, so queued callers stop hitting the API together.
+ *
+ * Callers wait in a bounded queue; once it is full, further callers are rejected right
+ * away instead of piling up.
+ */
+public class RateLimiter {
+
+    /**
+     * Limiter state.
+     *
+     * @param active    permits currently held
+     * @param waiting   callers currently queued for a permit
+     * @param granted   permits handed out since startup
+     * @param rejected  callers turned away because the queue was full
+     * @param throttled total time callers spent waiting on the buckets or a pause, in ms
+     */
+    public record Stats(int active, int waiting, long granted, long rejected, long throttled) { }
+
+    /**
+     * A granted slot; close it once the response has been read.
+     */
+    public final class Permit implements AutoCloseable {
+        private boolean closed;
+
+        private Permit() { }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                concurrency.release();
+            }
+        }
+    }
+
+    // e.g. "20ms", "1s", "6m0s", "1h2m3.5s"
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    // a continuously refilled bucket; unlimited until synced from headers
+    private static final class Bucket {
+        double capacity  = Double.POSITIVE_INFINITY;
+        double available = Double.POSITIVE_INFINITY;
+        double refillPerMs;
+        long   updatedAt = System.currentTimeMillis();
+
+        void refill(long now) {
+            if (!Double.isInfinite(capacity)) {
+                available = Math.min(capacity, available + (now - updatedAt) * refillPerMs);
+            }
+            updatedAt = now;
+        }
+
+        long waitMillis(double cost) {
+            double needed = Math.min(cost, capacity) - available;
+            if (needed <= 0) {
+                return 0;
+            }
+            return refillPerMs > 0 ? (long) Math.ceil(needed / refillPerMs) : 1_000;
+        }
+
+        void take(double cost) {
+            available -= Math.min(cost, capacity);
+        }
+
+        // the server's view wins: it also counts requests made by other clients on the same key
+        void sync(long limit, long remaining, long resetMs, long now) {
+            capacity    = limit;
+            available   = remaining;
+            refillPerMs = resetMs > 0 ? (double) (limit - remaining) / resetMs : limit / 60_000.0;
+            updatedAt   = now;
+        }
+    }
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Semaphore concurrency;
+
+    // all guarded by "this"
+    private final Bucket requests = new Bucket();
+    private final Bucket tokens   = new Bucket();
+    private long pausedUntil;
+    private int  waiting;
+    private long granted;
+    private long rejected;
+    private long throttled;
+
+    /**
+     * @param maxConcurrent requests allowed to be sent at the same time
+     * @param maxQueued     callers allowed to wait for a permit
+     */
+    public RateLimiter(int maxConcurrent, int maxQueued) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued     = maxQueued;
+        this.concurrency   = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Waits for a permit to send one request.
+     *
+     * @param tokenCost the request's expected token usage
+     * @return the permit; close it when the request has been answered
+     * @throws InterruptedException       if interrupted while waiting
+     * @throws RejectedExecutionException if too many callers are already waiting
+     */
+    public Permit acquire(int tokenCost) throws InterruptedException {
+        synchronized (this) {
+            if (waiting >= maxQueued) {
+                rejected++;
+                throw new RejectedExecutionException(
+                        "Too many OpenAI requests are queued; please try again in a moment");
+            }
+            waiting++;
+        }
+        try {
+            concurrency.acquire();
+            try {
+                waitForBudget(tokenCost);
+            } catch (InterruptedException e) {
+                concurrency.release();
+                throw e;
+            }
+            return new Permit();
+        } finally {
+            synchronized (this) {
+                waiting--;
+            }
+        }
+    }
+
+    /**
+     * Takes a permit only if one is free right now and nobody is waiting for one, for
+     * optional extra requests that should not hold anyone else up.
+     *
+     * @param tokenCost the request's expected token usage
+     * @return the permit, or null if there is none to spare
+     */
+    public Permit tryAcquire(int tokenCost) {
+        if (concurrency.hasQueuedThreads() || !concurrency.tryAcquire()) {
+            return null;
+        }
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            requests.refill(now);
+            tokens.refill(now);
+            if (pausedUntil > now || requests.waitMillis(1) > 0 || tokens.waitMillis(tokenCost) > 0) {
+                concurrency.release();
+                return null;
+            }
+            requests.take(1);
+            tokens.take(tokenCost);
+            granted++;
+            return new Permit();
+        }
+    }
+
+    /**
+     * Re-syncs the buckets from a response's {@code x-ratelimit-*} headers.
+     *
+     * @param headers response headers
+     */
+    public synchronized void update(HttpHeaders headers) {
+        long now = System.currentTimeMillis();
+        sync(requests, headers, "requests", now);
+        sync(tokens, headers, "tokens", now);
+    }
+
+    /**
+     * Holds back every caller for a while, for example after a 429.
+     *
+     * @param delay how long to pause
+     */
+    public synchronized void pauseFor(Duration delay) {
+        pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + delay.toMillis());
+    }
+
+    /**
+     * @return current limiter state
+     */
+    public synchronized Stats getStats() {
+        int active = maxConcurrent - concurrency.availablePermits();
+        return new Stats(active, waiting, granted, rejected, throttled);
+    }
+
+    /**
+     * Parses the duration format used by the {@code x-ratelimit-reset-*} headers.
+     *
+     * @param value e.g. "1s", "6m0s", "20ms"
+     * @return the duration in milliseconds, or -1 if it cannot be parsed
+     */
+    public static long parseResetMillis(String value) {
+        Matcher m = DURATION_PART.matcher(value.trim());
+        double total = 0;
+        boolean found = false;
+        while (m.find()) {
+            found = true;
+            double amount = Double.parseDouble(m.group(1));
+            total += switch (m.group(2)) {
+                case "h"  -> amount * 3_600_000;
+                case "m"  -> amount * 60_000;
+                case "s"  -> amount * 1_000;
+                default   -> amount;
+            };
+        }
+        return found ? (long) Math.ceil(total) : -1;
+    }
+
+    // —— internals —— //
+
+    private void waitForBudget(int tokenCost) throws InterruptedException {
+        while (true) {
+            long wait;
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                requests.refill(now);
+                tokens.refill(now);
+                wait = Math.max(pausedUntil - now,
+                        Math.max(requests.waitMillis(1), tokens.waitMillis(tokenCost)));
+                if (wait <= 0) {
+                    requests.take(1);
+                    tokens.take(tokenCost);
+                    granted++;
+                    return;
+                }
+                throttled += wait;
+            }
+            Thread.sleep(wait);
+        }
+    }
+
+    private static void sync(Bucket bucket, HttpHeaders headers, String kind, long now) {
+        Optional<String> limit     = headers.firstValue("x-ratelimit-limit-" + kind);
+        Optional<String> remaining = headers.firstValue("x-ratelimit-remaining-" + kind);
+        if (limit.isEmpty() || remaining.isEmpty()) {
+            return;
+        }
+        try {
+            long reset = headers.firstValue("x-ratelimit-reset-" + kind)
+                    .map(RateLimiter::parseResetMillis)
+                    .orElse(-1L);
+            bucket.sync(Long.parseLong(limit.get().trim()), Long.parseLong(remaining.get().trim()), reset, now);
+        } catch (NumberFormatException e) {
+            // malformed header: keep the current estimate
+        }
+    }
+}
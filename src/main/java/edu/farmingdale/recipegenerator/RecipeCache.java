@@ -0,0 +1,314 @@
+package edu.farmingdale.recipegenerator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Two-tier cache of generated recipes: an in-memory LRU in front of JSON files under
+ * {@code ~/.flavorbot/recipes}.
+ *
+ * Entries are keyed by {@link #key(List, String)}, a hash of the normalized ingredient
+ * set, the parsed preferences, and the provider and model that write the recipes, so
+ * "Eggs, milk" and "milk,  eggs" with the same preferences share one entry, while answers
+ * from another model, or from a stand-in server, are never served for the real API. Entries expire after a TTL; the disk tier is pruned to
+ * a maximum number of files, oldest first.
+ *
+ * Disk entries also record the request's ingredients and preferences, which the
+ * {@link SimilarRecipeIndex} is rebuilt from at startup.
+ */
+public class RecipeCache {
+    // --- single shared instance ---
+    private static final RecipeCache INSTANCE = new RecipeCache();
+
+    private static final Path DIRECTORY = Path.of(System.getProperty("user.home"), ".flavorbot", "recipes");
+
+    // bump when the recipe prompt changes, so old answers are not served for the new prompt
+    private static final String PROMPT_VERSION = "v2";
+
+    private static final int  MEMORY_ENTRIES = Integer.getInteger("flavorbot.recipeCache.memoryEntries", 64);
+    private static final int  DISK_ENTRIES   = Integer.getInteger("flavorbot.recipeCache.diskEntries", 500);
+    private static final long TTL_MS         =
+            TimeUnit.HOURS.toMillis(Long.getLong("flavorbot.recipeCache.ttlHours", 72L));
+
+    /**
+     * Cache counters since startup.
+     *
+     * @param memoryHits    lookups answered from memory
+     * @param diskHits      lookups answered from disk
+     * @param misses        lookups that found nothing usable
+     * @param memoryEntries entries currently held in memory
+     */
+    public record Stats(long memoryHits, long diskHits, long misses, int memoryEntries) { }
+
+    /**
+     * A recipe stored on disk, with the request it answered.
+     *
+     * @param key         its cache key
+     * @param ingredients the ingredients as entered
+     * @param preferences the preferences JSON
+     */
+    public record Stored(String key, List<String> ingredients, String preferences) { }
+
+    private record Entry(String recipe, long createdAt) {
+        boolean expired() {
+            return System.currentTimeMillis() - createdAt > TTL_MS;
+        }
+    }
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits   = new LongAdder();
+    private final LongAdder misses     = new LongAdder();
+
+    // guarded by "this"; access-ordered, so the eldest entry is the least recently used
+    private final Map<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+
+    // private ctor → use getInstance()
+    private RecipeCache() { }
+
+    /**
+     * @return the one-and-only RecipeCache
+     */
+    public static RecipeCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Builds the cache key for a recipe request. Ingredients are trimmed, lower-cased,
+     * de-duplicated and sorted; preferences are parsed and re-serialized with sorted keys.
+     * The current provider (its name, i.e. its endpoint) and recipe model
+     * ({@link OpenAI#recipeModel()}) are part of the key.
+     *
+     * @param ingredients     ingredient names as entered
+     * @param preferencesJson the user's preferences JSON
+     * @return a hex SHA-256 key
+     */
+    public static String key(List<String> ingredients, String preferencesJson) {
+        TreeSet<String> normalized = new TreeSet<>();
+        for (String ingredient : ingredients) {
+            String name = ingredient.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+            if (!name.isEmpty()) {
+                normalized.add(name);
+            }
+        }
+
+        String material = PROMPT_VERSION + "\n" + OpenAI.getProvider().name() + "\n" + OpenAI.recipeModel() + "\n"
+                + String.join("\n", normalized) + "\n" + canonicalPreferences(preferencesJson);
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(material.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @param preferencesJson the user's preferences JSON
+     * @return the preferences re-serialized with sorted keys and trimmed strings, so that
+     *         equal preferences give equal strings
+     */
+    public static String canonicalPreferences(String preferencesJson) {
+        try {
+            return canonical(new JSONObject(preferencesJson == null ? "{}" : preferencesJson));
+        } catch (JSONException e) {
+            return preferencesJson.trim();
+        }
+    }
+
+    /**
+     * Looks a recipe up in memory, then on disk.
+     *
+     * @param key a key from {@link #key(List, String)}
+     * @return the cached recipe, or null if there is none or it has expired
+     */
+    public String get(String key) {
+        synchronized (this) {
+            Entry entry = memory.get(key);
+            if (entry != null && !entry.expired()) {
+                memoryHits.increment();
+                return entry.recipe();
+            }
+            memory.remove(key);
+        }
+
+        Entry entry = readDisk(key);
+        if (entry == null || entry.expired()) {
+            misses.increment();
+            return null;
+        }
+        diskHits.increment();
+        synchronized (this) {
+            memory.put(key, entry);
+        }
+        return entry.recipe();
+    }
+
+    /**
+     * Stores a freshly generated recipe in both tiers and adds it to the
+     * {@link SimilarRecipeIndex}.
+     *
+     * @param ingredients     ingredient names as entered
+     * @param preferencesJson the user's preferences JSON
+     * @param recipe          the recipe text
+     */
+    public void put(List<String> ingredients, String preferencesJson, String recipe) {
+        if (recipe == null || recipe.isBlank()) {
+            return;
+        }
+        String key = key(ingredients, preferencesJson);
+        Entry entry = new Entry(recipe, System.currentTimeMillis());
+        synchronized (this) {
+            memory.put(key, entry);
+        }
+        writeDisk(key, entry, ingredients, preferencesJson);
+        SimilarRecipeIndex.getInstance().add(key, ingredients, preferencesJson);
+    }
+
+    /**
+     * Lists the unexpired recipes on disk that recorded their request.
+     *
+     * @return the stored requests, in no particular order
+     */
+    public List<Stored> storedEntries() {
+        List<Stored> stored = new ArrayList<>();
+        if (!Files.isDirectory(DIRECTORY)) {
+            return stored;
+        }
+        try (Stream<Path> listing = Files.list(DIRECTORY)) {
+            for (Path file : listing.filter(p -> p.toString().endsWith(".json")).toList()) {
+                try {
+                    JSONObject json = new JSONObject(Files.readString(file, StandardCharsets.UTF_8));
+                    JSONArray array = json.optJSONArray("ingredients");
+                    if (array == null || new Entry("", json.getLong("createdAt")).expired()) {
+                        continue;   // written before requests were recorded, or stale
+                    }
+                    List<String> ingredients = new ArrayList<>();
+                    for (int i = 0; i < array.length(); i++) {
+                        ingredients.add(array.getString(i));
+                    }
+                    String name = file.getFileName().toString();
+                    stored.add(new Stored(name.substring(0, name.length() - ".json".length()),
+                            ingredients, json.optString("preferences", "{}")));
+                } catch (IOException | JSONException e) {
+                    // unreadable entry: get() reports and skips it too
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Could not list the recipe cache: " + e.getMessage());
+        }
+        return stored;
+    }
+
+    /**
+     * @return hit/miss counters since startup
+     */
+    public synchronized Stats getStats() {
+        return new Stats(memoryHits.sum(), diskHits.sum(), misses.sum(), memory.size());
+    }
+
+    // —— internals —— //
+
+    private static Entry readDisk(String key) {
+        Path file = DIRECTORY.resolve(key + ".json");
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(Files.readString(file, StandardCharsets.UTF_8));
+            Entry entry = new Entry(json.getString("recipe"), json.getLong("createdAt"));
+            if (entry.expired()) {
+                Files.deleteIfExists(file);
+            }
+            return entry;
+        } catch (IOException | JSONException e) {
+            System.out.println("Ignoring unreadable recipe cache file " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeDisk(String key, Entry entry, List<String> ingredients, String preferencesJson) {
+        try {
+            Files.createDirectories(DIRECTORY);
+            JSONObject json = new JSONObject()
+                    .put("createdAt", entry.createdAt())
+                    .put("recipe", entry.recipe())
+                    .put("ingredients", new JSONArray(ingredients))
+                    .put("preferences", preferencesJson == null ? "{}" : preferencesJson);
+            // write then rename, so a reader never sees a half-written file
+            Path tmp = Files.createTempFile(DIRECTORY, key, ".tmp");
+            Files.writeString(tmp, json.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, DIRECTORY.resolve(key + ".json"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            prune();
+        } catch (IOException e) {
+            System.out.println("Could not write recipe cache entry: " + e.getMessage());
+        }
+    }
+
+    // keeps the disk tier at DISK_ENTRIES files, dropping the oldest first
+    private static void prune() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(DIRECTORY)) {
+            files = new ArrayList<>(listing.filter(p -> p.toString().endsWith(".json")).toList());
+        }
+        if (files.size() <= DISK_ENTRIES) {
+            return;
+        }
+        files.sort(Comparator.comparingLong(p -> p.toFile().lastModified()));
+        for (Path old : files.subList(0, files.size() - DISK_ENTRIES)) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    // JSON with object keys sorted and strings trimmed, so equal preferences serialize equally
+    private static String canonical(Object value) {
+        if (value instanceof JSONObject obj) {
+            StringBuilder sb = new StringBuilder("{");
+            for (String k : new TreeSet<>(obj.keySet())) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append(JSONObject.quote(k)).append(':').append(canonical(obj.get(k)));
+            }
+            return sb.append('}').toString();
+        }
+        if (value instanceof JSONArray arr) {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < arr.length(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(canonical(arr.get(i)));
+            }
+            return sb.append(']').toString();
+        }
+        if (value instanceof String str) {
+            return JSONObject.quote(str.trim());
+        }
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,75 @@
+package edu.farmingdale.recipegenerator;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A source of generated recipes and ingredient lists.
+ *
+ * {@link OpenAI} forwards its calls to one of these, so the generation path can be
+ * pointed at the real API, a {@link StandInModelServer} or anything else that answers
+ * the same questions.
+ */
+public interface RecipeModelProvider {
+
+    /**
+     * @return identifies the provider, e.g. its endpoint; calls to providers with the
+     *         same name may share one in-flight request
+     */
+    String name();
+
+    /**
+     * @param ingredients the ingredients to cook with
+     * @param preferences the user's preferences JSON
+     * @return the complete recipe text
+     * @throws Exception if the request fails
+     */
+    String getTextResponse(List<String> ingredients, String preferences) throws Exception;
+
+    /**
+     * Like {@link #getTextResponse(List, String)}, handing out the text as it is generated.
+     *
+     * @param ingredients the ingredients to cook with
+     * @param preferences the user's preferences JSON
+     * @param onDelta     receives each new piece of text, in order
+     * @return the complete recipe text
+     * @throws Exception if the request fails
+     */
+    String streamTextResponse(List<String> ingredients, String preferences, Consumer<String> onDelta)
+            throws Exception;
+
+    /**
+     * Like {@link #streamTextResponse(List, String, Consumer)}, asking for a particular take
+     * on the dish so that calls with different directions give different recipes.
+     * Interrupting the calling thread aborts the request.
+     *
+     * @param ingredients the ingredients to cook with
+     * @param preferences the user's preferences JSON
+     * @param direction   what kind of dish to make, e.g. "something quick and simple"
+     * @param onDelta     receives each new piece of text, in order
+     * @return the complete recipe text
+     * @throws Exception if the request fails or is interrupted
+     */
+    String streamVariant(List<String> ingredients, String preferences, String direction, Consumer<String> onDelta)
+            throws Exception;
+
+    /**
+     * Asks for the changes a recipe needs now that its ingredients changed a little,
+     * instead of a whole new recipe (see {@link RecipeRevision}).
+     *
+     * @param previousIngredients the ingredients the recipe was written for
+     * @param previousRecipe      the recipe
+     * @param ingredients         the ingredients now
+     * @param preferences         the user's preferences JSON
+     * @return only the sections of the recipe that change, each under its heading
+     * @throws Exception if the request fails
+     */
+    String reviseRecipe(List<String> previousIngredients, String previousRecipe, List<String> ingredients,
+                        String preferences) throws Exception;
+
+    /**
+     * @return about 20 common ingredient names
+     * @throws Exception if the request fails
+     */
+    List<String> getDefaultIngredients() throws Exception;
+}
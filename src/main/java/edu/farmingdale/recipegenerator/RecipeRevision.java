@@ -0,0 +1,194 @@
+package edu.farmingdale.recipegenerator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Revising a recipe for a slightly changed ingredient list instead of writing a new one.
+ *
+ * When only an ingredient or two changed, the model is shown the previous recipe and
+ * the {@link IngredientDiff}, and asked to answer with just the sections that change
+ * (see {@link OpenAI#reviseRecipe}). {@link #merge(String, String)} puts those sections
+ * into the previous recipe in place of the old ones, so the reply is a fraction of a
+ * full recipe's tokens.
+ */
+public final class RecipeRevision {
+
+    // more changes than this and a new recipe is asked for instead
+    private static final int MAX_CHANGES = Integer.getInteger("flavorbot.revise.maxChanges", 3);
+
+    // "**Tips:**", "**Tips**:", "## Tips:" or "Tips:" on a line of its own, optionally numbered
+    // ("3. Tips:", "**3) Tips:**"); bold headings may have text after them on the same line
+    private static final Pattern HEADING = Pattern.compile(
+            "^\\s*(?:#{1,6}\\s*)?(?:\\d+[.)]\\s*)?(\\*\\*)?\\s*(?:\\d+[.)]\\s*)?"
+            + "(\\p{L}[^:*#\\n]{0,40}?)\\s*(:\\s*\\*\\*|\\*\\*\\s*:|:)(.*)$");
+
+    // a new dish name is one short line, not a sentence
+    private static final int MAX_TITLE_LENGTH = 80;
+
+    /**
+     * How an ingredient list changed, ignoring case and order.
+     *
+     * @param added   ingredients in the new list only
+     * @param removed ingredients in the old list only
+     */
+    public record IngredientDiff(List<String> added, List<String> removed) {
+
+        /**
+         * @param before the ingredients the recipe was written for
+         * @param after  the ingredients now
+         * @return what changed from {@code before} to {@code after}
+         */
+        public static IngredientDiff between(List<String> before, List<String> after) {
+            Set<String> old = names(before);
+            Set<String> now = names(after);
+            return new IngredientDiff(
+                    after.stream().filter(i -> !old.contains(name(i))).toList(),
+                    before.stream().filter(i -> !now.contains(name(i))).toList());
+        }
+
+        /**
+         * @return how many ingredients were added or removed
+         */
+        public int size() {
+            return added.size() + removed.size();
+        }
+
+        /**
+         * @param previousCount how many ingredients the recipe was written for
+         * @return whether the change is small enough to revise the recipe rather than write a new one
+         */
+        public boolean worthRevising(int previousCount) {
+            return size() > 0 && size() <= MAX_CHANGES && removed.size() < previousCount;
+        }
+
+        /**
+         * @return the change in prompt form, e.g. "removed mushrooms; added spinach, feta"
+         */
+        @Override
+        public String toString() {
+            List<String> parts = new ArrayList<>(2);
+            if (!removed.isEmpty()) {
+                parts.add("removed " + String.join(", ", removed));
+            }
+            if (!added.isEmpty()) {
+                parts.add("added " + String.join(", ", added));
+            }
+            return parts.isEmpty() ? "nothing" : String.join("; ", parts);
+        }
+
+        private static Set<String> names(List<String> ingredients) {
+            return ingredients.stream().map(RecipeRevision::name).collect(Collectors.toSet());
+        }
+    }
+
+    // one section of a recipe: its heading (null for the text before the first one) and its lines
+    private record Section(String key, String text) { }
+
+    private RecipeRevision() { }
+
+    /**
+     * Puts the sections of a revision into the recipe it revises.
+     *
+     * Each section of {@code revision} replaces the previous recipe's section with the same
+     * heading, keeping its place; sections the recipe does not have are added at the end.
+     * A single short line before the first heading is taken as the dish's new name.
+     *
+     * @param previous the recipe as it was
+     * @param revision the model's answer: only the sections that change
+     * @return the revised recipe, or null if {@code revision} has no sections to merge
+     */
+    public static String merge(String previous, String revision) {
+        List<Section> before = sections(previous);
+        List<Section> changes = sections(revision);
+
+        // 1) the changed sections by heading, and a new name if there is one
+        Map<String, Section> changed = new LinkedHashMap<>();
+        String title = null;
+        for (Section s : changes) {
+            if (s.key() != null) {
+                changed.put(s.key(), s);
+            } else if (isTitle(s.text())) {
+                title = s.text();
+            }
+        }
+        if (changed.isEmpty()) {
+            return null;   // not in sections; nothing says what it replaces
+        }
+
+        // 2) the previous recipe, section by section
+        List<String> merged = new ArrayList<>();
+        if (title != null && (before.isEmpty() || before.get(0).key() != null)) {
+            merged.add(title);
+        }
+        for (Section s : before) {
+            if (s.key() == null) {
+                merged.add(title != null ? title : s.text());
+            } else {
+                Section replacement = changed.remove(s.key());
+                merged.add(replacement != null ? replacement.text() : s.text());
+            }
+        }
+
+        // 3) anything new, after the rest
+        for (Section s : changed.values()) {
+            merged.add(s.text());
+        }
+        return String.join("\n\n", merged);
+    }
+
+    // —— internals —— //
+
+    private static List<Section> sections(String text) {
+        List<Section> sections = new ArrayList<>();
+        String key = null;
+        List<String> lines = new ArrayList<>();
+        for (String line : text.strip().split("\\R")) {
+            String heading = heading(line);
+            if (heading != null) {
+                addSection(sections, key, lines);
+                key = heading;
+                lines = new ArrayList<>();
+            }
+            lines.add(line);
+        }
+        addSection(sections, key, lines);
+        return sections;
+    }
+
+    private static void addSection(List<Section> sections, String key, List<String> lines) {
+        String text = String.join("\n", lines).strip();
+        if (key != null || !text.isEmpty()) {
+            sections.add(new Section(key, text));
+        }
+    }
+
+    // "**Cooking Steps:**" or "2. Cooking Steps:" → "cookingsteps"; null if the line is not a heading
+    private static String heading(String line) {
+        Matcher m = HEADING.matcher(line);
+        if (!m.matches()) {
+            return null;
+        }
+        boolean bold = m.group(1) != null && !m.group(3).equals(":");
+        if (!bold && !m.group(4).isBlank()) {
+            return null;   // "Note: let it rest" is a line of text, not a heading
+        }
+        return m.group(2).toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}]", "");
+    }
+
+    private static boolean isTitle(String text) {
+        return !text.contains("\n") && text.length() <= MAX_TITLE_LENGTH
+                && !text.endsWith(".") && !text.endsWith(":");
+    }
+
+    private static String name(String ingredient) {
+        return ingredient.strip().toLowerCase(Locale.ROOT);
+    }
+}
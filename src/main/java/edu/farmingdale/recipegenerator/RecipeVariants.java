@@ -0,0 +1,157 @@
+package edu.farmingdale.recipegenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Several different recipes for the same ingredients, generated at the same time.
+ *
+ * Each variant is its own streaming request, asking for a different take on the dish
+ * (see {@link #direction(int)}), so the variants arrive side by side instead of one
+ * Generate click after another. The requests belong to this set: {@link #pick(int)}
+ * keeps one variant and cancels the requests still running, {@link #cancel()} cancels
+ * all of them. Cancelling interrupts the request's thread, which aborts the HTTP
+ * exchange, the wait for a rate-limit permit, or a retry backoff.
+ */
+public class RecipeVariants {
+
+    /**
+     * Receives the progress of every variant, on the variant's own thread. Nothing is
+     * reported for a variant once it has been cancelled.
+     */
+    public interface Listener {
+        /**
+         * @param index the variant
+         * @param piece the next piece of its text
+         */
+        void onDelta(int index, String piece);
+
+        /**
+         * @param index  the variant
+         * @param recipe its complete text
+         */
+        void onDone(int index, String recipe);
+
+        /**
+         * @param index the variant
+         * @param error why it failed
+         */
+        void onFailed(int index, Exception error);
+    }
+
+    // one per variant, so the requests ask for different dishes
+    private static final List<String> DIRECTIONS = List.of(
+            "a classic, familiar dish",
+            "something quick and simple",
+            "a more adventurous dish with bold flavors",
+            "a lighter, vegetable-forward dish",
+            "a hearty, comforting dish");
+
+    /**
+     * The most variants one set can generate.
+     */
+    public static final int MAX_VARIANTS = DIRECTIONS.size();
+
+    private final ExecutorService scope = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("recipe-variant-", 0).factory());
+    private final List<Future<String>> tasks = new ArrayList<>();
+    private final Set<Integer> cancelled = ConcurrentHashMap.newKeySet();
+
+    private RecipeVariants() { }
+
+    /**
+     * Starts generating {@code count} variants.
+     *
+     * @param ingredients the ingredients to cook with
+     * @param preferences the user's preferences JSON
+     * @param count       how many variants, 1 to {@link #MAX_VARIANTS}
+     * @param listener    receives each variant's text as it is written
+     * @return the running set
+     */
+    public static RecipeVariants start(List<String> ingredients, String preferences, int count, Listener listener) {
+        RecipeVariants set = new RecipeVariants();
+        int n = Math.max(1, Math.min(MAX_VARIANTS, count));
+        for (int i = 0; i < n; i++) {
+            int index = i;
+            set.tasks.add(set.scope.submit(() -> set.run(index, ingredients, preferences, listener)));
+        }
+        set.scope.shutdown();   // no more tasks; the threads end with their requests
+        return set;
+    }
+
+    /**
+     * @param index a variant
+     * @return what that variant asks for, e.g. "something quick and simple"
+     */
+    public static String direction(int index) {
+        return DIRECTIONS.get(index);
+    }
+
+    /**
+     * @return how many variants this set generates
+     */
+    public int count() {
+        return tasks.size();
+    }
+
+    /**
+     * Keeps one finished variant and cancels every request still running.
+     *
+     * @param index the variant to keep
+     * @return its text, or null if it has not finished successfully
+     */
+    public String pick(int index) {
+        Future<String> chosen = tasks.get(index);
+        if (chosen.state() != Future.State.SUCCESS) {
+            return null;
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            if (i != index) {
+                cancel(i);
+            }
+        }
+        return chosen.resultNow();
+    }
+
+    /**
+     * Cancels every variant still being generated.
+     */
+    public void cancel() {
+        for (int i = 0; i < tasks.size(); i++) {
+            cancel(i);
+        }
+    }
+
+    // —— internals —— //
+
+    private String run(int index, List<String> ingredients, String preferences, Listener listener) throws Exception {
+        try {
+            String recipe = OpenAI.streamVariant(ingredients, preferences, direction(index), piece -> {
+                if (!cancelled.contains(index)) {
+                    listener.onDelta(index, piece);
+                }
+            });
+            if (!cancelled.contains(index)) {
+                listener.onDone(index, recipe);
+            }
+            return recipe;
+        } catch (Exception e) {
+            // an aborted request surfaces as an interrupt or an I/O error; neither is worth reporting
+            if (!cancelled.contains(index)) {
+                listener.onFailed(index, e);
+            }
+            throw e;
+        }
+    }
+
+    private void cancel(int index) {
+        if (cancelled.add(index)) {
+            tasks.get(index).cancel(true);
+        }
+    }
+}
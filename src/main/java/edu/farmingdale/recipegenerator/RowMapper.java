@@ -0,0 +1,26 @@
+package edu.farmingdale.recipegenerator;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a {@link ResultSet} to a typed object.
+ *
+ * Mappers read columns by index, in the order of the SELECT list they are paired
+ * with, so they avoid the per-row column-name lookups and boxing of the old
+ * {@code Map<String,Object>} results.
+ *
+ * @param <T> the row type produced
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Maps the row the result set is currently positioned on.
+     *
+     * @param rs result set positioned on a row
+     * @return the mapped row
+     * @throws SQLException if a column cannot be read
+     */
+    T map(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,208 @@
+package edu.farmingdale.recipegenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the versioned SQL migrations bundled with the application.
+ *
+ * Migrations live in {@code src/main/resources/db/migration} and are named
+ * {@code V<version>__<description>.sql}. Each one runs at most once per database;
+ * applied versions are recorded in the {@code schema_version} table. A MySQL named
+ * lock makes sure two clients starting at the same time do not run the same
+ * migration twice.
+ *
+ * MySQL commits every DDL statement on its own, so a migration interrupted between
+ * its statements and its {@code schema_version} row runs again on the next start.
+ * Migrations are therefore written to be re-runnable: tables use {@code IF NOT EXISTS},
+ * data copies skip rows already copied, and a {@code CREATE INDEX} whose index already
+ * exists is skipped here (MySQL has no {@code CREATE INDEX IF NOT EXISTS}).
+ *
+ * To add a migration, drop the SQL file into the folder and append its file name
+ * to {@code MIGRATIONS}.
+ */
+public class SchemaMigrator {
+
+    // in version order; resources cannot be listed reliably from inside a module image
+    private static final List<String> MIGRATIONS = List.of(
+            "V1__create_fridge_items.sql",
+            "V2__copy_fridge_item_rows.sql",
+            "V3__index_fridge_configs_user.sql",
+            "V4__unique_username.sql"
+    );
+
+    private static final String LOCATION  = "/db/migration/";
+    private static final String LOCK_NAME = "flavorbot_schema_migration";
+    private static final int    LOCK_WAIT_SECONDS = 30;
+
+    // "CREATE [UNIQUE] INDEX name ON table ..."
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "(?is)^CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+`?(\\w+)`?\\s+ON\\s+`?(\\w+)`?.*");
+
+    private SchemaMigrator() { }
+
+    /**
+     * Brings the schema up to date on the given connection.
+     *
+     * @param conn an open connection with DDL rights
+     * @return number of migrations applied by this call
+     * @throws SQLException if a migration fails; earlier migrations stay applied
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute(""
+                    + "CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "  version     INT          NOT NULL PRIMARY KEY,"
+                    + "  description VARCHAR(200) NOT NULL,"
+                    + "  applied_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP"
+                    + ")");
+        }
+
+        // 1) serialize concurrent migrators
+        if (!acquireLock(conn)) {
+            throw new SQLException("Timed out waiting for the schema migration lock");
+        }
+        try {
+            // 2) run every bundled migration that has not been recorded yet
+            Set<Integer> applied = appliedVersions(conn);
+            int count = 0;
+            for (String file : MIGRATIONS) {
+                int version = versionOf(file);
+                if (applied.contains(version)) {
+                    continue;
+                }
+                apply(conn, file, version);
+                count++;
+            }
+            return count;
+        } finally {
+            releaseLock(conn);
+        }
+    }
+
+    /**
+     * @param conn an open connection
+     * @return the migration versions recorded as applied; empty if none are (or the
+     *         {@code schema_version} table does not exist yet)
+     */
+    public static Set<Integer> appliedVersions(Connection conn) {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+        } catch (SQLException e) {
+            versions.clear();   // no table, no recorded versions
+        }
+        return versions;
+    }
+
+    // —— internals —— //
+
+    private static void apply(Connection conn, String file, int version) throws SQLException {
+        String description = file.substring(file.indexOf("__") + 2, file.length() - 4).replace('_', ' ');
+        try (Statement st = conn.createStatement()) {
+            for (String sql : splitStatements(load(file))) {
+                if (indexExists(conn, sql)) {
+                    System.out.println("Schema migration " + file + ": index already exists, skipping");
+                    continue;
+                }
+                st.execute(sql);
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            ps.setInt(1, version);
+            ps.setString(2, description);
+            ps.executeUpdate();
+        }
+        System.out.println("Applied schema migration " + file);
+    }
+
+    // true if sql creates an index that an earlier, interrupted run already created
+    private static boolean indexExists(Connection conn, String sql) throws SQLException {
+        Matcher m = CREATE_INDEX.matcher(sql.trim());
+        if (!m.matches()) {
+            return false;
+        }
+        String query = ""
+                + "SELECT 1 FROM information_schema.statistics "
+                + " WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? LIMIT 1";
+        try (PreparedStatement ps = conn.prepareStatement(query)) {
+            ps.setString(1, m.group(2));
+            ps.setString(2, m.group(1));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_WAIT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static int versionOf(String file) {
+        return Integer.parseInt(file.substring(1, file.indexOf("__")));
+    }
+
+    private static String load(String file) throws SQLException {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream(LOCATION + file)) {
+            if (in == null) {
+                throw new SQLException("Migration not found on the classpath: " + file);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Could not read migration " + file, e);
+        }
+    }
+
+    // statements end with ';' at the end of a line; "--" lines are comments
+    private static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\\r?\\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String sql = current.toString().trim();
+                statements.add(sql.substring(0, sql.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (!current.toString().isBlank()) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+}
@@ -1,6 +1,7 @@
 package edu.farmingdale.recipegenerator;
 
 import javafx.animation.FadeTransition;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Rectangle2D;
@@ -179,31 +180,34 @@ public class SignUpController {
             return;
         }
 
-        // 6) Attempt to insert into the database
-        AzureDBConnector connector = new AzureDBConnector();
-        if(connector.usernameExists(username)) {
-            showAlert("Error",
-                    "Username already exists.",
-                    Alert.AlertType.ERROR);
-            usernameField.clear();
-            return;
-        }
-        try {
-            connector.insertUser(username, email, password);
-            showAlert("Success",
-                    "Account created successfully!",
-                    Alert.AlertType.INFORMATION);
-            connector.authenticateAndSetSession(username, password);
-
-//            openPreferencesWindow();
-            openMainWindow();
-
-        } catch (Exception ex) {
-            ex.printStackTrace();    // optional logging
-            showAlert("Unexpected Error",
-                    "An unexpected error occurred: " + ex.getMessage(),
-                    Alert.AlertType.ERROR);
-        }
+        // 6) Insert and sign in; the unique username index reports a taken name
+        //    (the connector looks it up first while that index is not yet in place)
+        AzureDBConnector connector = AzureDBConnector.getInstance();
+        signUpButton.setDisable(true);
+        connector.signUpAndSetSessionAsync(username, email, password)
+                .whenCompleteAsync((created, ex) -> {
+                    signUpButton.setDisable(false);
+                    if (ex != null) {
+                        ex.printStackTrace();    // optional logging
+                        showAlert("Unexpected Error",
+                                "An unexpected error occurred: " + ex.getMessage(),
+                                Alert.AlertType.ERROR);
+                        return;
+                    }
+                    if (!created) {
+                        showAlert("Error",
+                                "Username already exists.",
+                                Alert.AlertType.ERROR);
+                        usernameField.clear();
+                        return;
+                    }
+                    showAlert("Success",
+                            "Account created successfully!",
+                            Alert.AlertType.INFORMATION);
+
+//                    openPreferencesWindow();
+                    openMainWindow();
+                }, Platform::runLater);
     }
 
     /**
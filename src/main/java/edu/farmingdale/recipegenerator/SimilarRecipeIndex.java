@@ -0,0 +1,266 @@
+package edu.farmingdale.recipegenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds earlier recipes generated for nearly the same ingredients, so a request the
+ * {@link RecipeCache} misses only because of an extra "salt" or "Chicken breast" instead
+ * of "chicken" can still be answered without calling the API.
+ *
+ * Each request's ingredients are reduced to a set of features (singular words, with
+ * descriptors like "fresh" or "breast" and pantry staples like salt and oil left out)
+ * and fingerprinted with MinHash. Locality-sensitive hashing over bands of the
+ * fingerprint narrows a lookup to a few candidates with the same preferences, whose
+ * exact Jaccard similarity is then checked against {@code flavorbot.similarCache.threshold}
+ * (default 0.75). The index only holds fingerprints; the recipes stay in the RecipeCache.
+ */
+public class SimilarRecipeIndex {
+
+    // MinHash signature length = BANDS * ROWS; candidates need one band in common, which
+    // makes sets with similarity ≥ ~0.5 very likely to be found
+    private static final int BANDS = 16;
+    private static final int ROWS  = 4;
+
+    private static final double THRESHOLD = Double.parseDouble(
+            System.getProperty("flavorbot.similarCache.threshold", "0.75"));
+
+    // words that describe an ingredient rather than name it
+    private static final Set<String> DESCRIPTORS = Set.of(
+            "fresh", "dried", "frozen", "canned", "raw", "cooked", "organic", "whole", "large", "small",
+            "medium", "chopped", "minced", "sliced", "diced", "ground", "grated", "shredded", "boneless",
+            "skinless", "breast", "thigh", "fillet", "filet", "leg", "wing", "clove", "stalk", "sprig",
+            "leaf", "of", "and", "a", "the");
+
+    // in almost every recipe anyway, so they say nothing about the dish
+    private static final Set<String> STAPLES = Set.of(
+            "salt", "pepper", "black pepper", "water", "oil", "olive oil", "vegetable oil", "cooking spray");
+
+    /**
+     * A similar earlier request.
+     *
+     * @param cacheKey    its {@link RecipeCache} key
+     * @param ingredients its ingredients as entered
+     * @param similarity  Jaccard similarity of its ingredient features to the request's
+     */
+    public record Match(String cacheKey, List<String> ingredients, double similarity) { }
+
+    /**
+     * @param lookups    calls to {@link #findSimilar(List, String)}
+     * @param candidates stored requests compared exactly, after the LSH narrowing
+     * @param matches    lookups that found a request above the threshold
+     * @param entries    requests currently indexed
+     */
+    public record Stats(long lookups, long candidates, long matches, int entries) { }
+
+    private record Indexed(String cacheKey, List<String> ingredients, Set<String> features) { }
+
+    private record BandKey(String preferences, int band, long hash) { }
+
+    // --- single shared instance (after the constants the constructor reads) ---
+    private static final SimilarRecipeIndex INSTANCE = new SimilarRecipeIndex();
+
+    private final LongAdder lookups    = new LongAdder();
+    private final LongAdder candidates = new LongAdder();
+    private final LongAdder matches    = new LongAdder();
+
+    // all guarded by "this"
+    private final Map<String, Indexed> entries = new HashMap<>();
+    private final Map<BandKey, Set<String>> buckets = new HashMap<>();
+    private final Map<String, List<BandKey>> bandsOf = new HashMap<>();
+
+    // private ctor → use getInstance()
+    private SimilarRecipeIndex() {
+        for (RecipeCache.Stored stored : RecipeCache.getInstance().storedEntries()) {
+            // entries written for another recipe model or prompt version would no longer be looked up
+            if (stored.key().equals(RecipeCache.key(stored.ingredients(), stored.preferences()))) {
+                add(stored.key(), stored.ingredients(), stored.preferences());
+            }
+        }
+    }
+
+    /**
+     * @return the one-and-only SimilarRecipeIndex
+     */
+    public static SimilarRecipeIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Indexes a request whose recipe was stored in the RecipeCache.
+     *
+     * @param cacheKey        the recipe's cache key
+     * @param ingredients     ingredient names as entered
+     * @param preferencesJson the user's preferences JSON
+     */
+    public synchronized void add(String cacheKey, List<String> ingredients, String preferencesJson) {
+        Set<String> features = features(ingredients);
+        if (features.isEmpty()) {
+            return;
+        }
+        forget(cacheKey);
+        entries.put(cacheKey, new Indexed(cacheKey, List.copyOf(ingredients), features));
+        List<BandKey> keys = bandKeys(RecipeCache.canonicalPreferences(preferencesJson), signature(features));
+        for (BandKey key : keys) {
+            buckets.computeIfAbsent(key, k -> new HashSet<>()).add(cacheKey);
+        }
+        bandsOf.put(cacheKey, keys);
+    }
+
+    /**
+     * Drops a request, e.g. once its recipe has expired from the RecipeCache.
+     *
+     * @param cacheKey the recipe's cache key
+     */
+    public synchronized void forget(String cacheKey) {
+        entries.remove(cacheKey);
+        List<BandKey> keys = bandsOf.remove(cacheKey);
+        if (keys == null) {
+            return;
+        }
+        for (BandKey key : keys) {
+            Set<String> bucket = buckets.get(key);
+            if (bucket != null && bucket.remove(cacheKey) && bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Finds the most similar earlier request with the same preferences.
+     *
+     * @param ingredients     ingredient names as entered
+     * @param preferencesJson the user's preferences JSON
+     * @return the best match at or above the threshold, or null if there is none
+     */
+    public synchronized Match findSimilar(List<String> ingredients, String preferencesJson) {
+        lookups.increment();
+        Set<String> features = features(ingredients);
+        if (features.isEmpty()) {
+            return null;
+        }
+
+        // 1) candidates: requests sharing at least one band
+        Set<String> found = new HashSet<>();
+        for (BandKey key : bandKeys(RecipeCache.canonicalPreferences(preferencesJson), signature(features))) {
+            found.addAll(buckets.getOrDefault(key, Set.of()));
+        }
+        candidates.add(found.size());
+
+        // 2) the exact similarity decides
+        Match best = null;
+        for (String cacheKey : found) {
+            Indexed indexed = entries.get(cacheKey);
+            double similarity = jaccard(features, indexed.features());
+            if (similarity >= THRESHOLD && (best == null || similarity > best.similarity())) {
+                best = new Match(cacheKey, indexed.ingredients(), similarity);
+            }
+        }
+        if (best != null) {
+            matches.increment();
+        }
+        return best;
+    }
+
+    /**
+     * @return lookup counters since startup
+     */
+    public synchronized Stats getStats() {
+        return new Stats(lookups.sum(), candidates.sum(), matches.sum(), entries.size());
+    }
+
+    // —— internals —— //
+
+    // "2 Fresh Chicken Breasts", "chicken" → {chicken}; staples → nothing
+    private static Set<String> features(List<String> ingredients) {
+        Set<String> features = new TreeSet<>();
+        for (String ingredient : ingredients) {
+            List<String> words = new ArrayList<>();
+            for (String word : ingredient.toLowerCase(Locale.ROOT).split("[^\\p{L}]+")) {
+                String singular = singular(word);
+                if (!singular.isEmpty() && !DESCRIPTORS.contains(singular)) {
+                    words.add(singular);
+                }
+            }
+            if (!STAPLES.contains(String.join(" ", words))) {
+                features.addAll(words);
+            }
+        }
+        return features;
+    }
+
+    private static String singular(String word) {
+        if (word.length() <= 3 || word.endsWith("ss")) {
+            return word;
+        }
+        if (word.endsWith("ies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.endsWith("oes") || word.endsWith("ches") || word.endsWith("shes")) {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.endsWith("s")) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    private static long[] signature(Set<String> features) {
+        long[] signature = new long[BANDS * ROWS];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (String feature : features) {
+            long base = fnv1a(feature);
+            for (int i = 0; i < signature.length; i++) {
+                signature[i] = Math.min(signature[i], mix(base + i * 0x9E3779B97F4A7C15L));
+            }
+        }
+        return signature;
+    }
+
+    private static List<BandKey> bandKeys(String preferences, long[] signature) {
+        List<BandKey> keys = new ArrayList<>(BANDS);
+        for (int band = 0; band < BANDS; band++) {
+            long hash = 17;
+            for (int row = 0; row < ROWS; row++) {
+                hash = hash * 31 + signature[band * ROWS + row];
+            }
+            keys.add(new BandKey(preferences, band, hash));
+        }
+        return keys;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        int common = 0;
+        for (String x : a) {
+            if (b.contains(x)) {
+                common++;
+            }
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+
+    private static long fnv1a(String s) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // splitmix64 finalizer: one independent hash function per signature slot
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
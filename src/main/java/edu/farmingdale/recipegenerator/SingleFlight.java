@@ -0,0 +1,129 @@
+package edu.farmingdale.recipegenerator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Collapses concurrent calls for the same key into one execution.
+ *
+ * The first caller for a key (the leader) runs the work; callers arriving while it is
+ * still running wait for it and receive the same result or exception instead of
+ * starting their own. Work may also publish progress events (for example streamed
+ * text); every caller's listener sees all of them, late joiners starting with a replay
+ * of the events published before they joined.
+ *
+ * @param <K> key type
+ * @param <P> progress event type
+ * @param <V> result type
+ */
+public class SingleFlight<K, P, V> {
+
+    /**
+     * The work to run once per key.
+     *
+     * @param <P> progress event type
+     * @param <V> result type
+     */
+    @FunctionalInterface
+    public interface Work<P, V> {
+        /**
+         * @param emit publishes a progress event to every waiting caller
+         * @return the result handed to every waiting caller
+         * @throws Exception handed to every waiting caller
+         */
+        V run(Consumer<P> emit) throws Exception;
+    }
+
+    /**
+     * @param executed number of times the work actually ran
+     * @param shared   number of calls that joined a running execution instead
+     */
+    public record Stats(long executed, long shared) { }
+
+    // one running execution and the callers listening to it
+    private final class Flight {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        private final List<P> history = new ArrayList<>();
+        private final List<Consumer<P>> listeners = new ArrayList<>();
+
+        synchronized void join(Consumer<P> listener) {
+            history.forEach(listener);
+            listeners.add(listener);
+        }
+
+        synchronized void emit(P event) {
+            history.add(event);
+            for (Consumer<P> listener : listeners) {
+                listener.accept(event);
+            }
+        }
+    }
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder shared   = new LongAdder();
+
+    // guarded by "this"
+    private final Map<K, Flight> inFlight = new HashMap<>();
+
+    /**
+     * Runs {@code work} for {@code key}, or joins the execution already running for it.
+     *
+     * @param key      identifies equivalent calls
+     * @param listener receives progress events; may be null
+     * @param work     the work to run if no execution is running for {@code key}
+     * @return the result of the (possibly shared) execution
+     * @throws Exception whatever the (possibly shared) execution threw
+     */
+    public V execute(K key, Consumer<P> listener, Work<P, V> work) throws Exception {
+        Flight flight;
+        boolean leader;
+        synchronized (this) {
+            flight = inFlight.get(key);
+            leader = flight == null;
+            if (leader) {
+                flight = new Flight();
+                inFlight.put(key, flight);
+                executed.increment();
+            } else {
+                shared.increment();
+            }
+        }
+        if (listener != null) {
+            flight.join(listener);
+        }
+
+        if (leader) {
+            try {
+                flight.result.complete(work.run(flight::emit));
+            } catch (Throwable t) {
+                flight.result.completeExceptionally(t);   // followers must never be left waiting
+            } finally {
+                synchronized (this) {
+                    inFlight.remove(key, flight);
+                }
+            }
+        }
+
+        try {
+            return flight.result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return how many executions ran and how many calls were saved by sharing them
+     */
+    public Stats getStats() {
+        return new Stats(executed.sum(), shared.sum());
+    }
+}
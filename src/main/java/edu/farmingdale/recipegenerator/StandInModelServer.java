@@ -0,0 +1,451 @@
+package edu.farmingdale.recipegenerator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A local HTTP server that answers OpenAI chat completion requests with recorded
+ * responses, for measuring the generation path without the real API.
+ *
+ * A recording is a JSON file {@code {"match": "...", "response": {...}}}: the response
+ * (a chat completion as returned by the API) is replayed for requests whose messages
+ * contain {@code match}; the longest match wins, and several recordings with the same
+ * match are served in turn.
+ * Streaming requests get the recorded text back as server-sent events, one word per
+ * chunk, followed by a usage chunk if asked for. Answers longer than the request's
+ * {@code max_tokens} are cut there and marked {@code finish_reason: "length"}, as the
+ * API does. A request that carries the cut-off text as an assistant message gets the
+ * rest of that recording, so continuations can be measured too.
+ *
+ * Configured with system properties (used by {@link #startDefault()} and {@link #main}):
+ * - {@code flavorbot.standin.port}: port to listen on, 0 (default) for any free one;
+ * - {@code flavorbot.standin.recordings}: directory of recordings; the bundled ones otherwise;
+ * - {@code flavorbot.standin.latency}: time to first byte, as "fixed:MS", "uniform:MIN,MAX"
+ *   or "lognormal:MEDIAN,SIGMA" (default "lognormal:600,0.5");
+ * - {@code flavorbot.standin.chunkMs}: delay between streamed chunks (default 20);
+ * - {@code flavorbot.standin.errorRate}: share of requests answered with a 429 (default 0).
+ */
+public class StandInModelServer {
+
+    private static final String RECORDINGS_LOCATION = "/standin/";
+
+    // the bundled recordings, in the order they are matched
+    private static final List<String> BUNDLED = List.of(
+            "default-ingredients.json",
+            "recipe-chicken-rice.json",
+            "recipe-vegetable-pasta.json",
+            "recipe-revision.json");
+
+    private record Recording(String match, JSONObject response) { }
+
+    /**
+     * A distribution of delays in milliseconds.
+     */
+    public static final class Latency {
+        private final String kind;
+        private final double a;
+        private final double b;
+
+        private Latency(String kind, double a, double b) {
+            this.kind = kind;
+            this.a    = a;
+            this.b    = b;
+        }
+
+        /**
+         * @param spec "fixed:MS", "uniform:MIN,MAX" or "lognormal:MEDIAN,SIGMA"
+         * @return the distribution
+         * @throws IllegalArgumentException if the spec cannot be parsed
+         */
+        public static Latency parse(String spec) {
+            try {
+                String[] parts = spec.trim().split(":", 2);
+                String[] args  = parts[1].split(",");
+                double a = Double.parseDouble(args[0].trim());
+                double b = args.length > 1 ? Double.parseDouble(args[1].trim()) : 0;
+                return switch (parts[0].trim()) {
+                    case "fixed"     -> new Latency("fixed", a, 0);
+                    case "uniform"   -> new Latency("uniform", a, b);
+                    case "lognormal" -> new Latency("lognormal", a, b);
+                    default -> throw new IllegalArgumentException("Unknown latency distribution: " + parts[0]);
+                };
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("Bad latency spec '" + spec + "'", e);
+            }
+        }
+
+        /**
+         * @return one sampled delay, in milliseconds
+         */
+        public long sampleMillis() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            double ms = switch (kind) {
+                case "uniform"   -> a + random.nextDouble() * (b - a);
+                case "lognormal" -> a * Math.exp(b * random.nextGaussian());
+                default          -> a;
+            };
+            return Math.max(0, Math.round(ms));
+        }
+    }
+
+    private final List<Recording> recordings;
+    private final Latency firstByte;
+    private final long chunkMillis;
+    private final double errorRate;
+    private final AtomicLong served = new AtomicLong();
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("standin-", 0).factory());
+
+    /**
+     * Creates the server; call {@link #start()} to accept requests.
+     *
+     * @param port          port to listen on, 0 for any free one
+     * @param recordingsDir directory of recordings, or null for the bundled ones
+     * @param firstByte     delay before the response headers are sent
+     * @param chunkMillis   delay between streamed chunks
+     * @param errorRate     share of requests (0..1) answered with a 429
+     * @throws IOException if the port cannot be bound or a recording cannot be read
+     */
+    public StandInModelServer(int port, Path recordingsDir, Latency firstByte, long chunkMillis, double errorRate)
+            throws IOException {
+        this.recordings  = recordingsDir == null ? loadBundled() : loadDirectory(recordingsDir);
+        this.firstByte   = firstByte;
+        this.chunkMillis = chunkMillis;
+        this.errorRate   = errorRate;
+        this.server      = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts a server configured from the {@code flavorbot.standin.*} system properties.
+     *
+     * @return the running server
+     * @throws IllegalStateException if it cannot be started
+     */
+    public static StandInModelServer startDefault() {
+        try {
+            String dir = System.getProperty("flavorbot.standin.recordings");
+            StandInModelServer s = new StandInModelServer(
+                    Integer.getInteger("flavorbot.standin.port", 0),
+                    dir == null ? null : Path.of(dir),
+                    Latency.parse(System.getProperty("flavorbot.standin.latency", "lognormal:600,0.5")),
+                    Long.getLong("flavorbot.standin.chunkMs", 20L),
+                    Double.parseDouble(System.getProperty("flavorbot.standin.errorRate", "0")));
+            s.start();
+            return s;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start the stand-in model server", e);
+        }
+    }
+
+    /**
+     * Runs the server on its own, until the process is stopped.
+     *
+     * @param args optional port (overrides {@code flavorbot.standin.port})
+     */
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            System.setProperty("flavorbot.standin.port", args[0]);
+        }
+        StandInModelServer s = startDefault();
+        System.out.println("Stand-in model server listening at " + s.baseUrl()
+                + " (start the app with -Dflavorbot.openai.baseUrl=" + s.baseUrl() + ")");
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and closes the port.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the base URL to point a chat completions client at, e.g. "http://127.0.0.1:51234/v1"
+     */
+    public URI baseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + "/v1");
+    }
+
+    /**
+     * @return requests answered so far
+     */
+    public long getServedCount() {
+        return served.get();
+    }
+
+    // —— internals —— //
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendJson(exchange, 405, error("Only POST is supported"));
+                return;
+            }
+            JSONObject request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = new JSONObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            } catch (JSONException e) {
+                sendJson(exchange, 400, error("Request body is not JSON"));
+                return;
+            }
+
+            // 1) the recording to replay
+            String prompt = promptText(request);
+            String partial = partialAnswer(request);
+            Recording recording = partial == null ? null : pickContinued(prompt, partial);
+            if (recording == null) {
+                partial = null;   // a complete earlier answer, e.g. one being revised
+                recording = pick(prompt);
+            }
+            if (recording == null) {
+                sendJson(exchange, 400, error("No recording matches this request"));
+                return;
+            }
+
+            // 2) time to first byte, and the occasional rate limit
+            sleep(firstByte.sampleMillis());
+            served.incrementAndGet();
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                exchange.getResponseHeaders().add("retry-after-ms", "200");
+                sendJson(exchange, 429, error("Rate limit reached (stand-in)"));
+                return;
+            }
+
+            // 3) the recorded text, cut at max_tokens like the API would
+            String content = content(recording);
+            if (partial != null) {
+                content = content.substring(partial.length());
+            }
+            List<String> pieces = split(content);
+            int maxTokens = request.optInt("max_tokens", Integer.MAX_VALUE);
+            int completionTokens = 0;
+            int kept = 0;
+            for (String piece : pieces) {
+                int cost = TokenEstimator.estimate(piece);
+                if (completionTokens + cost > maxTokens) {
+                    break;
+                }
+                completionTokens += cost;
+                kept++;
+            }
+            String finishReason = kept < pieces.size() ? "length" : "stop";
+            pieces = pieces.subList(0, kept);
+            JSONObject usage = new JSONObject()
+                    .put("prompt_tokens", TokenEstimator.estimateMessages(request.getJSONArray("messages")))
+                    .put("completion_tokens", completionTokens);
+            usage.put("total_tokens", usage.getInt("prompt_tokens") + completionTokens);
+
+            String model = request.optString("model", recording.response().optString("model", "stand-in"));
+            if (request.optBoolean("stream")) {
+                boolean includeUsage = request.optJSONObject("stream_options") != null
+                        && request.getJSONObject("stream_options").optBoolean("include_usage");
+                stream(exchange, model, pieces, finishReason, includeUsage ? usage : null);
+            } else {
+                JSONObject response = new JSONObject(recording.response().toString())
+                        .put("id", "chatcmpl-standin-" + served.get())
+                        .put("created", System.currentTimeMillis() / 1000)
+                        .put("model", model)
+                        .put("usage", usage);
+                JSONObject choice = response.getJSONArray("choices").getJSONObject(0);
+                choice.getJSONObject("message").put("content", String.join("", pieces));
+                choice.put("finish_reason", finishReason);
+                sendJson(exchange, 200, response);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void stream(HttpExchange exchange, String model, List<String> pieces, String finishReason,
+                        JSONObject usage) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);   // chunked
+        String id = "chatcmpl-standin-" + served.get();
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (String piece : pieces) {
+                writeEvent(out, chunk(id, model, new JSONObject().put("content", piece), null));
+                sleep(chunkMillis);
+            }
+            writeEvent(out, chunk(id, model, new JSONObject(), finishReason));
+            if (usage != null) {
+                writeEvent(out, new JSONObject().put("id", id).put("object", "chat.completion.chunk")
+                        .put("model", model).put("choices", new JSONArray()).put("usage", usage).toString());
+            }
+            writeEvent(out, "[DONE]");
+        }
+    }
+
+    private static String chunk(String id, String model, JSONObject delta, String finishReason) {
+        JSONObject choice = new JSONObject().put("index", 0).put("delta", delta)
+                .put("finish_reason", finishReason == null ? JSONObject.NULL : finishReason);
+        return new JSONObject().put("id", id).put("object", "chat.completion.chunk").put("model", model)
+                .put("choices", new JSONArray().put(choice)).toString();
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static JSONObject error(String message) {
+        return new JSONObject().put("error", new JSONObject().put("message", message).put("type", "stand_in"));
+    }
+
+    // all message contents, for matching against the recordings
+    private static String promptText(JSONObject request) {
+        StringBuilder text = new StringBuilder();
+        JSONArray messages = request.optJSONArray("messages");
+        for (int i = 0; messages != null && i < messages.length(); i++) {
+            text.append(messages.getJSONObject(i).optString("content")).append('\n');
+        }
+        return text.toString();
+    }
+
+    // the text of an earlier, cut-off answer the request asks to continue, or null
+    private static String partialAnswer(JSONObject request) {
+        JSONArray messages = request.optJSONArray("messages");
+        for (int i = messages == null ? -1 : messages.length() - 1; i >= 0; i--) {
+            JSONObject message = messages.getJSONObject(i);
+            if ("assistant".equals(message.optString("role"))) {
+                return message.optString("content");
+            }
+        }
+        return null;
+    }
+
+    // the matching recording the partial answer was cut from
+    private Recording pickContinued(String prompt, String partial) {
+        for (Recording r : recordings) {
+            String content = content(r);
+            if (prompt.contains(r.match()) && content.length() > partial.length() && content.startsWith(partial)) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    private static String content(Recording recording) {
+        return recording.response().getJSONArray("choices")
+                .getJSONObject(0).getJSONObject("message").getString("content");
+    }
+
+    // the recordings with the longest matching match, in turn
+    private Recording pick(String prompt) {
+        List<Recording> matching = new ArrayList<>();
+        int longest = -1;
+        for (Recording r : recordings) {
+            if (!prompt.contains(r.match()) || r.match().length() < longest) {
+                continue;
+            }
+            if (r.match().length() > longest) {
+                matching.clear();
+                longest = r.match().length();
+            }
+            matching.add(r);
+        }
+        if (matching.isEmpty()) {
+            return null;
+        }
+        return matching.get((int) (served.get() % matching.size()));
+    }
+
+    // one word with the whitespace before it per piece, like the API's chunks; they join back to the text
+    private static List<String> split(String content) {
+        List<String> pieces = new ArrayList<>();
+        for (String piece : content.split("(?<=\\S)(?=\\s)")) {
+            if (!piece.isEmpty()) {
+                pieces.add(piece);
+            }
+        }
+        return pieces;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<Recording> loadBundled() throws IOException {
+        List<Recording> loaded = new ArrayList<>();
+        for (String file : BUNDLED) {
+            try (InputStream in = StandInModelServer.class.getResourceAsStream(RECORDINGS_LOCATION + file)) {
+                if (in == null) {
+                    throw new IOException("Recording not found on the classpath: " + file);
+                }
+                loaded.add(parse(new String(in.readAllBytes(), StandardCharsets.UTF_8), file));
+            }
+        }
+        return loaded;
+    }
+
+    private static List<Recording> loadDirectory(Path dir) throws IOException {
+        List<Recording> loaded = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".json")).sorted().toList()) {
+                loaded.add(parse(Files.readString(file, StandardCharsets.UTF_8), file.toString()));
+            }
+        }
+        if (loaded.isEmpty()) {
+            throw new IOException("No recordings (*.json) in " + dir);
+        }
+        return loaded;
+    }
+
+    private static Recording parse(String json, String source) throws IOException {
+        try {
+            JSONObject o = new JSONObject(json);
+            JSONObject response = o.getJSONObject("response");
+            response.getJSONArray("choices").getJSONObject(0).getJSONObject("message").getString("content");
+            return new Recording(o.optString("match", ""), response);
+        } catch (JSONException e) {
+            throw new IOException("Bad recording " + source + ": " + e.getMessage(), e);
+        }
+    }
+}
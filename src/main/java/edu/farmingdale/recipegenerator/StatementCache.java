@@ -0,0 +1,205 @@
+package edu.farmingdale.recipegenerator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL text.
+ *
+ * {@link ConnectionPool} gives every pooled connection its own cache. When a caller
+ * prepares a SQL string it has prepared before on the same connection, it gets the
+ * already-prepared statement back instead of paying another parse/prepare round trip.
+ * Closing the handed-out statement only clears its parameters; the real statement is
+ * closed when it falls out of the LRU or when the connection is retired.
+ */
+public class StatementCache {
+
+    /**
+     * Hit/miss/eviction counters shared by every cache in one pool.
+     */
+    public static final class Counters {
+        final LongAdder hits      = new LongAdder();
+        final LongAdder misses    = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+
+        /** @return number of prepares served from a cache */
+        public long hits()      { return hits.sum(); }
+
+        /** @return number of prepares that went to the server */
+        public long misses()    { return misses.sum(); }
+
+        /** @return number of statements closed because their cache was full */
+        public long evictions() { return evictions.sum(); }
+    }
+
+    // a cached statement plus whether a caller is currently holding it
+    private static final class Entry {
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private final Connection physical;
+    private final int maxSize;
+    private final Counters counters;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Creates an empty cache for one connection.
+     *
+     * @param physical the real (unpooled) connection statements are prepared on
+     * @param maxSize  maximum number of statements kept open; 0 disables caching
+     * @param counters pool-wide counters to update
+     */
+    public StatementCache(Connection physical, int maxSize, Counters counters) {
+        this.physical = physical;
+        this.maxSize  = maxSize;
+        this.counters = counters;
+        this.entries  = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a prepared statement for {@code sql}, reusing a cached one if possible.
+     *
+     * @param logical           the pooled connection handle the caller sees
+     * @param sql               SQL text
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}
+     * @return a statement whose {@code close()} returns it to this cache
+     * @throws SQLException if preparing the statement fails
+     */
+    public synchronized PreparedStatement prepare(Connection logical, String sql, int autoGeneratedKeys)
+            throws SQLException {
+        if (maxSize <= 0) {
+            // caching disabled: every prepare goes to the server, and close() really closes
+            counters.misses.increment();
+            return physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+        String key = autoGeneratedKeys + ":" + sql;
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.inUse) {
+            counters.hits.increment();
+        } else {
+            counters.misses.increment();
+            PreparedStatement ps = physical.prepareStatement(sql, autoGeneratedKeys);
+            if (entry != null) {
+                // same SQL already checked out (nested use): hand out a private statement
+                return ps;
+            }
+            entry = new Entry(ps);
+            entry.inUse = true;        // before put(), so an eviction it triggers cannot close it
+            entries.put(key, entry);
+        }
+        entry.inUse = true;
+        return wrap(logical, entry);
+    }
+
+    /**
+     * Closes every cached statement. Called when the owning connection is retired.
+     */
+    public synchronized void closeAll() {
+        List<Entry> all = new ArrayList<>(entries.values());
+        entries.clear();
+        for (Entry e : all) {
+            closeQuietly(e.statement);
+        }
+    }
+
+    // —— internals —— //
+
+    private void evict(Entry entry) {
+        counters.evictions.increment();
+        if (entry.inUse) {
+            entry.evicted = true;   // closed once its current user is done
+        } else {
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.inUse = false;
+        if (entry.evicted) {
+            closeQuietly(entry.statement);
+            return;
+        }
+        try {
+            entry.statement.clearParameters();
+            entry.statement.clearBatch();
+        } catch (SQLException e) {
+            // statement is unusable; drop it so the next prepare builds a fresh one
+            entries.values().remove(entry);
+            closeQuietly(entry.statement);
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // nothing useful to do while discarding
+        }
+    }
+
+    private PreparedStatement wrap(Connection logical, Entry entry) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean closed;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (method.getDeclaringClass() == Object.class) {
+                    return switch (name) {
+                        case "equals"   -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        default         -> "Cached[" + entry.statement + "]";
+                    };
+                }
+                switch (name) {
+                    case "close" -> {
+                        if (!closed) {
+                            closed = true;
+                            release(entry);
+                        }
+                        return null;
+                    }
+                    case "isClosed"      -> { return closed || entry.statement.isClosed(); }
+                    case "getConnection" -> { return logical; }
+                    default -> { }
+                }
+                if (closed) {
+                    throw new SQLException("Statement has already been closed");
+                }
+                try {
+                    return method.invoke(entry.statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handler);
+    }
+}
@@ -0,0 +1,67 @@
+package edu.farmingdale.recipegenerator;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.text.Text;
+
+/**
+ * Appends text produced on a background thread to a {@link Text} node, at most once
+ * per JavaFX pulse.
+ *
+ * A streamed completion arrives as hundreds of small pieces. Posting each one with
+ * {@code Platform.runLater} would queue hundreds of layout passes; instead pieces are
+ * collected in a buffer and an {@link AnimationTimer} moves whatever has accumulated
+ * into the node on each frame.
+ */
+public class StreamingTextRenderer {
+    private final Text target;
+    private final AnimationTimer timer;
+
+    // guarded by "this"
+    private final StringBuilder pending = new StringBuilder();
+
+    /**
+     * Creates a renderer and starts draining into {@code target}. Must be called on the
+     * JavaFX thread.
+     *
+     * @param target the node the text is appended to
+     */
+    public StreamingTextRenderer(Text target) {
+        this.target = target;
+        this.timer  = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drain();
+            }
+        };
+        timer.start();
+    }
+
+    /**
+     * Queues text to be appended on the next pulse. Safe to call from any thread.
+     *
+     * @param piece the text to append
+     */
+    public synchronized void append(String piece) {
+        pending.append(piece);
+    }
+
+    /**
+     * Appends anything still queued and stops the timer. Must be called on the JavaFX thread.
+     */
+    public void finish() {
+        timer.stop();
+        drain();
+    }
+
+    private void drain() {
+        String chunk;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            chunk = pending.toString();
+            pending.setLength(0);
+        }
+        target.setText(target.getText() + chunk);
+    }
+}
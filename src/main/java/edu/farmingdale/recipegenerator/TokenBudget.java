@@ -0,0 +1,63 @@
+package edu.farmingdale.recipegenerator;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Sizes {@code max_tokens} for a recipe request from what the user asked for.
+ *
+ * A typical recipe with the requested sections runs 400–700 tokens; asking for 2000
+ * only lets the occasional rambling answer cost more and take longer. The budget
+ * starts from a base and grows for requests that need longer answers: beginners get
+ * more explained steps, long cooking times have more steps, large batches and extra
+ * notes add lines.
+ */
+public final class TokenBudget {
+
+    private static final int BASE_TOKENS = 450;
+    private static final int MIN_TOKENS  = 300;
+    private static final int MAX_TOKENS  = Integer.getInteger("flavorbot.openai.maxCompletionTokens", 1200);
+
+    private TokenBudget() { }
+
+    /**
+     * @param preferencesJson the user's preferences JSON
+     * @return the {@code max_tokens} to request for one recipe
+     */
+    public static int recipeMaxTokens(String preferencesJson) {
+        JSONObject prefs;
+        try {
+            prefs = new JSONObject(preferencesJson == null ? "{}" : preferencesJson);
+        } catch (JSONException e) {
+            prefs = new JSONObject();
+        }
+
+        int tokens = BASE_TOKENS;
+
+        // 1) explanation depth
+        tokens += switch (prefs.optString("cookingSkill", "None")) {
+            case "Beginner"     -> 200;
+            case "Advanced"     -> 0;
+            default             -> 80;
+        };
+
+        // 2) longer dishes have more steps
+        tokens += switch (prefs.optString("cookingTime", "None")) {
+            case "15min"  -> -60;
+            case "1hour"  -> 100;
+            case "2hours" -> 200;
+            default       -> 0;
+        };
+
+        // 3) big batches get scaled quantities and notes
+        if (prefs.optInt("numberOfServings", 1) > 4) {
+            tokens += 40;
+        }
+
+        // 4) free-text constraints usually get acknowledged in the answer
+        tokens += TokenEstimator.estimate(prefs.optString("allergies", "")) / 2;
+        tokens += TokenEstimator.estimate(prefs.optString("additionalNotes", "")) / 2;
+
+        return Math.max(MIN_TOKENS, Math.min(MAX_TOKENS, tokens));
+    }
+}
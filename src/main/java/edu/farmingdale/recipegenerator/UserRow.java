@@ -0,0 +1,79 @@
+package edu.farmingdale.recipegenerator;
+
+/**
+ * One row of the {@code users} table.
+ *
+ * @param userId         the user's unique ID
+ * @param username       the username
+ * @param email          the email address
+ * @param hashedPassword the stored password hash
+ * @param preferences    the JSON blob of user preferences (may be null)
+ */
+public record UserRow(int userId,
+                      String username,
+                      String email,
+                      String hashedPassword,
+                      String preferences) {
+
+    /**
+     * SELECT list that {@link #MAPPER} expects, in column order.
+     */
+    public static final String COLUMNS = "userID, username, email, hashed_password, preferences";
+
+    /**
+     * Maps a row selected with {@link #COLUMNS}.
+     */
+    public static final RowMapper<UserRow> MAPPER = rs -> new UserRow(
+            rs.getInt(1),
+            rs.getString(2),
+            rs.getString(3),
+            rs.getString(4),
+            rs.getString(5)
+    );
+
+    /**
+     * Column sets that listings can select. {@link #SUMMARY} leaves out the
+     * {@code hashed_password} and {@code preferences} blobs (mapped as null), which
+     * dominate row size in admin listings.
+     */
+    public enum Projection {
+        /** Every column, mapped by {@link UserRow#MAPPER}. */
+        FULL(COLUMNS, MAPPER),
+
+        /** ID, username and email only. */
+        SUMMARY("userID, username, email", rs -> new UserRow(
+                rs.getInt(1),
+                rs.getString(2),
+                rs.getString(3),
+                null,
+                null
+        ));
+
+        private final String columns;
+        private final RowMapper<UserRow> mapper;
+
+        Projection(String columns, RowMapper<UserRow> mapper) {
+            this.columns = columns;
+            this.mapper  = mapper;
+        }
+
+        /** @return the SELECT list for this projection */
+        public String columns() {
+            return columns;
+        }
+
+        /** @return the mapper matching {@link #columns()} */
+        public RowMapper<UserRow> mapper() {
+            return mapper;
+        }
+    }
+
+    /**
+     * Converts this row into the session's {@link User} model.
+     *
+     * @return a new User with the same field values
+     */
+    public User toUser() {
+        return new User(userId, username, email, hashedPassword, preferences);
+    }
+}
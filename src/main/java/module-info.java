@@ -2,9 +2,11 @@ module edu.farmingdale.recipegenerator {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.net.http;
+    requires jdk.httpserver;
     requires org.json;
     requires java.sql;
     requires mysql.connector.j;
+    requires com.h2database;
     requires jdk.javadoc;
     requires java.desktop;
     requires jakarta.mail;
@@ -0,0 +1,13 @@
+-- One row per fridge ingredient, replacing the per-item rows in fridge_configs.
+-- Columns match the Item model (name, quantity, weight). Lookups by user and
+-- by (user, name) are index seeks on idx_fridge_items_user_name.
+CREATE TABLE IF NOT EXISTS fridge_items (
+    id          INT          NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_id     INT          NOT NULL,
+    name        VARCHAR(255) NOT NULL,
+    quantity    INT          NOT NULL DEFAULT 1,
+    weight      VARCHAR(64)  NULL,
+    created_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_fridge_items_user_name (user_id, name)
+);
@@ -0,0 +1,11 @@
+-- Copy the one-row-per-ingredient entries (rows without an items blob) out of
+-- fridge_configs. The original rows are left in place so older clients keep working;
+-- fridge_configs is only read for JSON snapshots from now on.
+-- Re-runnable: a user whose items were already copied (by a run that stopped before
+-- it was recorded in schema_version) is skipped.
+INSERT INTO fridge_items (user_id, name, created_at, updated_at)
+SELECT fc.user_id, fc.name, COALESCE(fc.created_at, CURRENT_TIMESTAMP), COALESCE(fc.created_at, CURRENT_TIMESTAMP)
+  FROM fridge_configs fc
+ WHERE fc.items IS NULL
+   AND fc.name IS NOT NULL
+   AND NOT EXISTS (SELECT 1 FROM fridge_items fi WHERE fi.user_id = fc.user_id);
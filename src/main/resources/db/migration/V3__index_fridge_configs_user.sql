@@ -0,0 +1,3 @@
+-- Supports listFridgeConfigs and the keyset-paginated listFridgeConfigsPage
+-- (WHERE user_id = ? AND id > ? ORDER BY id).
+CREATE INDEX idx_fridge_configs_user_id ON fridge_configs (user_id, id);
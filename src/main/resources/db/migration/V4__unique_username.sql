@@ -0,0 +1,3 @@
+-- Sign-up relies on this index to reject a taken username in the same statement
+-- that inserts the new account, instead of checking with a separate query first.
+CREATE UNIQUE INDEX uq_users_username ON users (username);
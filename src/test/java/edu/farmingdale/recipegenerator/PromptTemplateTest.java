@@ -0,0 +1,101 @@
+package edu.farmingdale.recipegenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PromptTemplateTest {
+
+    @Test
+    void recipeSystemIsFixed() {
+        String rendered = PromptTemplate.RECIPE_SYSTEM.render();
+
+        assertEquals(List.of(), PromptTemplate.RECIPE_SYSTEM.variables());
+        assertTrue(rendered.startsWith("You are a professional chef who writes clear, detailed recipes.\n"), rendered);
+        assertTrue(rendered.contains("\n1. Ingredients: a list with quantities.\n"), rendered);
+        assertTrue(rendered.endsWith("\n4. Serving Suggestions."), rendered);
+        // byte-for-byte the same on every call, so the provider can reuse the cached prefix
+        assertEquals(rendered, PromptTemplate.RECIPE_SYSTEM.render());
+        assertEquals(107, PromptTemplate.RECIPE_SYSTEM.fixedTokens());
+        assertEquals(TokenEstimator.estimate(rendered), PromptTemplate.RECIPE_SYSTEM.fixedTokens());
+    }
+
+    @Test
+    void recipeUserCarriesOnlyTheRequest() {
+        String rendered = PromptTemplate.RECIPE_USER.render(Map.of(
+                "ingredients", "chicken, rice, garlic",
+                "preferences", "cuisine Italian; spice 3/10"));
+
+        assertEquals(List.of("ingredients", "preferences"), PromptTemplate.RECIPE_USER.variables());
+        assertEquals("Ingredients: chicken, rice, garlic\nPreferences: cuisine Italian; spice 3/10", rendered);
+        assertEquals(8, PromptTemplate.RECIPE_USER.fixedTokens());
+        assertEquals(22, TokenEstimator.estimate(rendered));
+    }
+
+    @Test
+    void reviseNamesTheChanges() {
+        String rendered = PromptTemplate.REVISE.render(Map.of("changes", "removed mushrooms; added spinach"));
+
+        assertEquals(List.of("changes"), PromptTemplate.REVISE.variables());
+        assertTrue(rendered.startsWith(
+                "The ingredients changed: removed mushrooms; added spinach. Revise the recipe for them.\n"), rendered);
+        assertTrue(rendered.endsWith("Leave out every section that stays the same."), rendered);
+        assertEquals(58, PromptTemplate.REVISE.fixedTokens());
+        assertEquals(66, TokenEstimator.estimate(rendered));
+    }
+
+    @Test
+    void continueIsFixed() {
+        assertEquals(List.of(), PromptTemplate.CONTINUE.variables());
+        assertEquals("Your answer was cut off. Continue exactly where it stopped, without repeating anything.",
+                PromptTemplate.CONTINUE.render());
+        assertEquals(22, PromptTemplate.CONTINUE.fixedTokens());
+    }
+
+    @Test
+    void missingVariableIsRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> PromptTemplate.RECIPE_USER.render(Map.of("ingredients", "eggs")));
+
+        assertEquals("No value for prompt variable 'preferences'", e.getMessage());
+    }
+
+    @Test
+    void compactPreferencesInLabelOrder() {
+        assertEquals("cuisine Thai; diet Vegan; servings 4; spice 7/10",
+                PromptTemplate.compactPreferences(
+                        "{\"spiceLevel\":7,\"numberOfServings\":4,\"dietaryPreference\":\"Vegan\",\"foodStyle\":\"Thai\"}"));
+    }
+
+    @Test
+    void compactPreferencesLeavesOutUnsetValues() {
+        assertEquals("none", PromptTemplate.compactPreferences(
+                "{\"foodStyle\":\"None\",\"mealType\":\"Doesn’t matter\",\"allergies\":\"\",\"spiceLevel\":0}"));
+        assertEquals("none", PromptTemplate.compactPreferences("{\"spiceLevel\":\"0\"}"));
+        assertEquals("meal Dinner", PromptTemplate.compactPreferences(
+                "{\"mealType\":\"Dinner\",\"spiceLevel\":0,\"cookingSkill\":\"None\"}"));
+    }
+
+    @Test
+    void compactPreferencesWithNothingSet() {
+        assertEquals("none", PromptTemplate.compactPreferences(null));
+        assertEquals("none", PromptTemplate.compactPreferences("  "));
+        assertEquals("none", PromptTemplate.compactPreferences("{}"));
+    }
+
+    @Test
+    void compactPreferencesKeepsInvalidJson() {
+        assertEquals("{not json", PromptTemplate.compactPreferences("  {not json  "));
+    }
+
+    @Test
+    void compactPreferencesCollapsesWhitespace() {
+        assertEquals("notes no nuts please",
+                PromptTemplate.compactPreferences("{\"additionalNotes\":\"no   nuts\\n please\"}"));
+    }
+}
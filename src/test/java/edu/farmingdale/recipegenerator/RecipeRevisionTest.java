@@ -0,0 +1,142 @@
+package edu.farmingdale.recipegenerator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipeRevisionTest {
+
+    private static final String RECIPE = String.join("\n",
+            "Mushroom Omelette",
+            "",
+            "**Ingredients:**",
+            "- 3 eggs",
+            "- 100 g mushrooms",
+            "",
+            "**Preparation and Cooking Steps:**",
+            "1. Slice the mushrooms.",
+            "2. Fry them, then add the eggs.",
+            "",
+            "**Tips:**",
+            "Don't overcook the eggs.");
+
+    // the same recipe with its headings numbered, as the system prompt lists them
+    private static final String NUMBERED_RECIPE = String.join("\n",
+            "Mushroom Omelette",
+            "",
+            "1. Ingredients:",
+            "- 3 eggs",
+            "- 100 g mushrooms",
+            "",
+            "2. Preparation and Cooking Steps:",
+            "1. Slice the mushrooms.",
+            "2. Fry them, then add the eggs.",
+            "",
+            "3. Tips:",
+            "Don't overcook the eggs.");
+
+    @Test
+    void replacesSectionsWithTheSameHeading() {
+        String merged = RecipeRevision.merge(RECIPE, String.join("\n",
+                "Spinach Omelette",
+                "",
+                "**Ingredients:**",
+                "- 3 eggs",
+                "- 1 handful spinach"));
+
+        assertEquals(String.join("\n",
+                "Spinach Omelette",
+                "",
+                "**Ingredients:**",
+                "- 3 eggs",
+                "- 1 handful spinach",
+                "",
+                "**Preparation and Cooking Steps:**",
+                "1. Slice the mushrooms.",
+                "2. Fry them, then add the eggs.",
+                "",
+                "**Tips:**",
+                "Don't overcook the eggs."), merged);
+    }
+
+    @Test
+    void numberedRevisionReplacesUnnumberedHeading() {
+        String merged = RecipeRevision.merge(RECIPE, String.join("\n",
+                "3. Tips:",
+                "Fold the omelette while the top is still soft."));
+
+        assertTrue(merged.endsWith("3. Tips:\nFold the omelette while the top is still soft."), merged);
+        assertFalse(merged.contains("Don't overcook"), merged);
+    }
+
+    @Test
+    void unnumberedRevisionReplacesNumberedHeading() {
+        String merged = RecipeRevision.merge(NUMBERED_RECIPE, String.join("\n",
+                "**Tips:**",
+                "Fold the omelette while the top is still soft."));
+
+        assertTrue(merged.startsWith("Mushroom Omelette\n\n1. Ingredients:"), merged);
+        assertTrue(merged.endsWith("**Tips:**\nFold the omelette while the top is still soft."), merged);
+        assertFalse(merged.contains("3. Tips:"), merged);
+    }
+
+    @Test
+    void numberedHeadingsMatchInEveryForm() {
+        for (String heading : List.of("2. Preparation and Cooking Steps:", "2) Preparation and Cooking Steps:",
+                "**2. Preparation and Cooking Steps:**", "2. **Preparation and Cooking Steps:**",
+                "## 2. Preparation and Cooking Steps:")) {
+            String merged = RecipeRevision.merge(NUMBERED_RECIPE, heading + "\n1. Fry the spinach.");
+
+            assertTrue(merged.contains(heading + "\n1. Fry the spinach.\n\n3. Tips:"), heading + " → " + merged);
+            assertFalse(merged.contains("Slice the mushrooms"), heading + " → " + merged);
+        }
+    }
+
+    @Test
+    void numberedStepsAreNotHeadings() {
+        String merged = RecipeRevision.merge(RECIPE, String.join("\n",
+                "**Preparation and Cooking Steps:**",
+                "1. Note: wash the spinach first.",
+                "2. Wilt the spinach, then add the eggs."));
+
+        assertTrue(merged.contains("1. Note: wash the spinach first.\n2. Wilt the spinach"), merged);
+        assertTrue(merged.endsWith("**Tips:**\nDon't overcook the eggs."), merged);
+    }
+
+    @Test
+    void newSectionsGoAtTheEnd() {
+        String merged = RecipeRevision.merge(RECIPE, "4. Serving Suggestions:\nServe with toast.");
+
+        assertTrue(merged.startsWith(RECIPE), merged);
+        assertTrue(merged.endsWith("4. Serving Suggestions:\nServe with toast."), merged);
+    }
+
+    @Test
+    void revisionWithoutHeadingsIsNotMerged() {
+        assertNull(RecipeRevision.merge(RECIPE, "Use spinach instead of mushrooms."));
+    }
+
+    @Test
+    void diffIgnoresCaseAndOrder() {
+        RecipeRevision.IngredientDiff diff = RecipeRevision.IngredientDiff.between(
+                List.of("Eggs", "Mushrooms", "Cheese"), List.of("cheese", "eggs", "Spinach"));
+
+        assertEquals(List.of("Spinach"), diff.added());
+        assertEquals(List.of("Mushrooms"), diff.removed());
+        assertEquals("removed Mushrooms; added Spinach", diff.toString());
+        assertTrue(diff.worthRevising(3));
+    }
+
+    @Test
+    void replacingEveryIngredientIsNotARevision() {
+        RecipeRevision.IngredientDiff diff = RecipeRevision.IngredientDiff.between(
+                List.of("eggs"), List.of("tofu"));
+
+        assertFalse(diff.worthRevising(1));
+    }
+}
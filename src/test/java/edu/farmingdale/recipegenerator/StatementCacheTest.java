@@ -0,0 +1,88 @@
+package edu.farmingdale.recipegenerator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementCacheTest {
+
+    private Connection physical;
+    private StatementCache.Counters counters;
+
+    @BeforeEach
+    void open() throws SQLException {
+        physical = DriverManager.getConnection("jdbc:h2:mem:statement-cache-test");
+        counters = new StatementCache.Counters();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        physical.close();
+    }
+
+    @Test
+    void sizeZeroPreparesUncachedStatements() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 0, counters);
+
+        for (int i = 0; i < 2; i++) {
+            try (PreparedStatement ps = cache.prepare(physical, "SELECT ?", Statement.NO_GENERATED_KEYS)) {
+                assertFalse(ps.isClosed());
+                assertEquals(i, select(ps, i));
+            }
+        }
+        assertEquals(0, counters.hits());
+        assertEquals(2, counters.misses());
+        assertEquals(0, counters.evictions());
+    }
+
+    @Test
+    void sizeOneReusesAndEvictsTheOlderStatement() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 1, counters);
+
+        PreparedStatement first = cache.prepare(physical, "SELECT ?", Statement.NO_GENERATED_KEYS);
+        assertEquals(1, select(first, 1));
+        first.close();
+
+        try (PreparedStatement again = cache.prepare(physical, "SELECT ?", Statement.NO_GENERATED_KEYS)) {
+            assertEquals(2, select(again, 2));
+        }
+        assertEquals(1, counters.hits());
+
+        // a second SQL string pushes the first one out, but is itself usable
+        try (PreparedStatement other = cache.prepare(physical, "SELECT ? + 1", Statement.NO_GENERATED_KEYS)) {
+            assertFalse(other.isClosed());
+            assertEquals(4, select(other, 3));
+        }
+        assertEquals(1, counters.evictions());
+        assertEquals(2, counters.misses());
+    }
+
+    @Test
+    void closedHandleRejectsFurtherUse() throws SQLException {
+        StatementCache cache = new StatementCache(physical, 1, counters);
+
+        PreparedStatement ps = cache.prepare(physical, "SELECT ?", Statement.NO_GENERATED_KEYS);
+        ps.close();
+
+        assertTrue(ps.isClosed());
+    }
+
+    private static int select(PreparedStatement ps, int value) throws SQLException {
+        ps.setInt(1, value);
+        try (ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+}